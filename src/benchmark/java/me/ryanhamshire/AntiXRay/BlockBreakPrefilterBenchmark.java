@@ -0,0 +1,54 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import org.bukkit.Material;
+
+// measures the cost of the common case in BlockEventHandler#onBlockBreak: rejecting breaks of unprotected blocks (stone,
+// dirt, wood, ..) via the per world bitset of protected materials and the highest protected height
+// not part of the regular build, run via 'gradle benchmark'
+public class BlockBreakPrefilterBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 20000000;
+	private static final int MEASURED_ITERATIONS = 100000000;
+
+	public static void main(String[] args) {
+		WorldProtections protections = BlockBreakPrefilterTest.createProtections();
+		// the typical mix of broken blocks: only unprotected blocks, at various heights
+		Material[] types = { Material.STONE, Material.DIRT, Material.GRASS_BLOCK, Material.OAK_LOG, Material.GRAVEL, Material.SAND,
+				Material.NETHERRACK, Material.ANDESITE };
+		int[] heights = { 12, 40, 64, 70, 5, 63, 100, 30, 24 };
+
+		run(protections, types, heights, WARMUP_ITERATIONS);
+		long start = System.nanoTime();
+		int protectedCount = run(protections, types, heights, MEASURED_ITERATIONS);
+		long duration = System.nanoTime() - start;
+
+		if (protectedCount != 0) throw new IllegalStateException("Unprotected blocks passed the prefilter: " + protectedCount);
+		System.out.println("Prefilter, unprotected blocks: " + String.format("%.2f", (double) duration / MEASURED_ITERATIONS) + " ns per break");
+	}
+
+	private static int run(WorldProtections protections, Material[] types, int[] heights, int iterations) {
+		int protectedCount = 0;
+		for (int i = 0; i < iterations; i++) {
+			if (protections.mightBeProtected(types[i & 7], heights[i % heights.length])) protectedCount++;
+		}
+		return protectedCount;
+	}
+}
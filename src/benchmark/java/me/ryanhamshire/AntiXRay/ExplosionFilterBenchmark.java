@@ -0,0 +1,75 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.block.Block;
+
+// measures the throughput of ExplosionsListener#removeProtectedBlocks for explosions of about 10k blocks
+// the fake blocks are reflection proxies, which are a lot slower than real blocks: the cost of calls to them is measured
+// separately and subtracted, so that the result is about the filter itself
+// not part of the regular build, run via 'gradle benchmark'
+public class ExplosionFilterBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 200;
+	private static final int MEASURED_ITERATIONS = 1000;
+
+	public static void main(String[] args) {
+		FakeWorld world = new FakeWorld(ExplosionFilterTest::getTerrainType);
+		List<Block> explosion = world.getSphere(0, 10, 0, 13.4D);
+		WorldProtections protections = ExplosionFilterTest.createProtections();
+
+		// the cost of a single call to the fake objects:
+		readCoordinates(explosion, WARMUP_ITERATIONS);
+		world.resetCounters();
+		long start = System.nanoTime();
+		readCoordinates(explosion, MEASURED_ITERATIONS);
+		double nanosPerProxyCall = (double) (System.nanoTime() - start) / world.proxyCalls;
+
+		run(world, protections, explosion, WARMUP_ITERATIONS);
+		world.resetCounters();
+		start = System.nanoTime();
+		run(world, protections, explosion, MEASURED_ITERATIONS);
+		long duration = System.nanoTime() - start;
+		double filterNanos = (duration - world.proxyCalls * nanosPerProxyCall) / MEASURED_ITERATIONS;
+
+		System.out.println("Explosion filter: " + explosion.size() + " blocks, " + String.format("%.1f", filterNanos / 1000.0D)
+				+ " us per explosion without the fake blocks (" + String.format("%.1f", duration / 1000.0D / MEASURED_ITERATIONS)
+				+ " us with " + (world.proxyCalls / MEASURED_ITERATIONS) + " calls to them)");
+	}
+
+	private static int readCoordinates(List<Block> explosion, int iterations) {
+		int sum = 0;
+		for (int i = 0; i < iterations; i++) {
+			for (Block block : explosion) {
+				sum += block.getX() + block.getY() + block.getZ();
+			}
+		}
+		return sum;
+	}
+
+	private static void run(FakeWorld world, WorldProtections protections, List<Block> explosion, int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			// a fresh listener each time, so that every explosion filters all of its blocks
+			new ExplosionsListener().removeProtectedBlocks(world.getWorld(), protections, new ArrayList<Block>(explosion));
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.block.Block;
+
+// counts how many block types the explosion filter reads (from blocks and from chunk snapshots) for explosions of
+// different sizes, for the first explosion at a place and for following explosions at the same place within the
+// expiration of the cached sections (for example chained tnt)
+// without the section prefilter, each explosion reads the types of all of its blocks
+// not part of the regular build, run via 'gradle benchmark'
+public class ExplosionSectionScanBenchmark {
+
+	private static final int REPEATED_EXPLOSIONS = 10;
+
+	public static void main(String[] args) {
+		// a tnt sized explosion, centered on a corner shared by 8 chunk sections
+		measure("small explosion, underground", 0, 16, 0, 4.0D);
+		measure("large explosion, underground", 0, 10, 0, 13.4D);
+		// above the protected height
+		measure("large explosion, surface", 0, 70, 0, 13.4D);
+	}
+
+	private static void measure(String name, int x, int y, int z, double radius) {
+		FakeWorld world = new FakeWorld(ExplosionFilterTest::getTerrainType);
+		List<Block> explosion = world.getSphere(x, y, z, radius);
+		WorldProtections protections = ExplosionFilterTest.createProtections();
+		ExplosionsListener listener = new ExplosionsListener();
+
+		world.resetCounters();
+		listener.removeProtectedBlocks(world.getWorld(), protections, new ArrayList<Block>(explosion));
+		long firstReads = world.blockTypeLookups + world.snapshotTypeLookups;
+		print(name + ", first", explosion.size(), world, 1);
+
+		world.resetCounters();
+		for (int i = 0; i < REPEATED_EXPLOSIONS; i++) {
+			listener.removeProtectedBlocks(world.getWorld(), protections, new ArrayList<Block>(explosion));
+		}
+		print(name + ", repeated", explosion.size(), world, REPEATED_EXPLOSIONS);
+
+		long totalReads = firstReads + world.blockTypeLookups + world.snapshotTypeLookups;
+		System.out.println("Section scan, " + name + ": " + totalReads + " reads for " + (REPEATED_EXPLOSIONS + 1)
+				+ " explosions, without the prefilter: " + ((long) explosion.size() * (REPEATED_EXPLOSIONS + 1)));
+	}
+
+	private static void print(String name, int blocks, FakeWorld world, int explosions) {
+		System.out.println("Section scan, " + name + ": " + blocks + " blocks, per explosion: "
+				+ (world.blockTypeLookups / explosions) + " block type reads, "
+				+ (world.snapshotTypeLookups / explosions) + " snapshot type reads, "
+				+ String.format("%.1f", (double) world.chunkSnapshots / explosions) + " chunk snapshots");
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+// FEATURE: give players points for playing, as long as they're not away from their computer
+
+// checks every minute in the main thread which online players appear to be actively playing
+// the activity of players is collected from their movement, interactions and chat (see PlayerEventHandler)
+// the points themselves are accrued lazily (see PlayerData#accruePoints), this only pauses and resumes the accrual when
+// a player goes afk or comes back
+// runs every tick, but each player only gets checked once per minute, on a tick derived from his uuid: this spreads the
+// checks of all online players evenly over the minute, instead of checking all of them at once
+class AfkCheckTask implements Runnable {
+
+	// the number of ticks between two checks of the same player
+	static final int CHECK_INTERVAL_TICKS = 20 * 60;
+
+	// how much a player has to move and look around between two checks to be considered active:
+	// being moved around by water streams or vehicles doesn't count, since that doesn't change the player's view
+	static final float MIN_MOVED_DISTANCE = 3.0F;
+	static final int MIN_LOOK_CHANGES = 2;
+
+	private int currentTick = 0;
+
+	// the players which chatted since their last check: chat events are called asynchronously
+	private final Set<UUID> chattedPlayers = ConcurrentHashMap.newKeySet();
+
+	AfkCheckTask() {
+	}
+
+	// forgets the collected chat activity of the given player
+	void removePlayer(Player player) {
+		chattedPlayers.remove(player.getUniqueId());
+	}
+
+	// can be called from any thread
+	void onChat(Player player) {
+		chattedPlayers.add(player.getUniqueId());
+	}
+
+	@Override
+	public void run() {
+		int tick = currentTick;
+		currentTick = (currentTick + 1) % CHECK_INTERVAL_TICKS;
+
+		long now = System.currentTimeMillis();
+		OnlinePlayers onlinePlayers = AntiXRay.instance.onlinePlayers;
+
+		// for each online player who gets checked on this tick
+		for (int slot = onlinePlayers.getFirstAfkCheckSlot(tick); slot != OnlinePlayers.NO_SLOT; slot = onlinePlayers.getNextAfkCheckSlot(slot)) {
+			Player player = onlinePlayers.getPlayer(slot);
+			PlayerData playerData = onlinePlayers.getPlayerData(slot);
+
+			// check if the player might be afk: he didn't move and look around, interact or chat since the last check
+			boolean active = onlinePlayers.activeSinceAfkCheck[slot];
+			if (!chattedPlayers.isEmpty() && chattedPlayers.remove(player.getUniqueId())) active = true;
+			boolean afk = !active;
+
+			// start collecting his activity for the next check
+			onlinePlayers.activeSinceAfkCheck[slot] = false;
+			onlinePlayers.movedDistances[slot] = 0.0F;
+			onlinePlayers.lookChanges[slot] = 0;
+
+			if (afk) {
+				int afkMinutes = ++onlinePlayers.afkMinutes[slot];
+				AntiXRay.debug("Player '" + player.getName() + "' seems to be AFK since " + afkMinutes + " minutes.");
+				// don't punish players for being afk for only a short time,
+				// for example while reading or riding a vehicle:
+				if (afkMinutes >= 5 && !playerData.isAfk()) {
+					// this player is already afk for quite some time now,
+					// we can be sure now that the player is really afk
+					// give him the points he earned until now, and pause the accrual while he is afk
+					playerData.accruePoints(now);
+					playerData.setAfk(true);
+				}
+			} else {
+				// player is not afk, reset afkMinutes:
+				onlinePlayers.afkMinutes[slot] = 0;
+				if (playerData.isAfk()) {
+					// resume the accrual from now on
+					playerData.accruePoints(now);
+					playerData.setAfk(false);
+					AntiXRay.debug("Player '" + player.getName() + "' is no longer AFK.");
+				}
+			}
+		}
+	}
+}
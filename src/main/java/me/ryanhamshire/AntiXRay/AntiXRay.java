@@ -22,27 +22,39 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.logging.Logger;
 
 import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.Tag;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.WorldType;
+import org.bukkit.block.Biome;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import me.ryanhamshire.AntiXRay.thirdparty.mcstats.Metrics;
 
@@ -69,34 +81,91 @@ public class AntiXRay extends JavaPlugin {
 														 // points when receiving them via breaking blocks (block ratio)
 	public boolean config_exemptCreativeModePlayers; // whether creative mode players should be exempt from the rules
 	public boolean config_notifyOnLimitReached; // whether to notify online moderators when a player reaches his limit
+	public int config_notificationDigestInterval; // if not 0, limit reached notifications are collected and sent in
+													// one summary every that many seconds
+	public long config_deniedBreakMessageCooldown; // the minimum time in milliseconds between two messages informing a
+													 // player that he can't break a block yet
+	public int config_autosaveInterval; // if not 0, the changed data of online players is saved every that many minutes
 
 	public ProtectedBlocks protections;
 
+	// the protected blocks placed by players, which can be broken without spending points
+	public PlacedBlocksTracker placedBlocks;
+
+	// the online players and their session state
+	public OnlinePlayers onlinePlayers;
+
+	// checks which online players are afk
+	public AfkCheckTask afkCheckTask;
+
+	// the online players which get notified about players reaching their mining limit
+	public Moderators moderators;
+
+	// collects limit reached notifications, if notification digests are enabled
+	public LimitReachedDigest limitReachedDigest;
+
+	// informs players that they can't break blocks yet, without flooding them with messages
+	public DeniedBreakMessages deniedBreakMessages;
+	private BukkitTask limitReachedDigestTask;
+
+	// regularly saves changed player data, if enabled
+	private BukkitTask autosaveTask;
+
+	// listeners which only get registered if the current configuration requires them
+	private BlockEventHandler blockEventHandler;
+	private boolean blockEventHandlerRegistered = false;
+	private ExplosionsListener explosionsListener;
+	private boolean explosionsListenerRegistered = false;
+
+	// named groups of block types, referenced by '#groupName' in the config, only used while loading the config
+	private Map<String, Set<Material>> blockGroups = Collections.emptyMap();
+
 	// initializes well... everything
 	public void onEnable() {
 		instance = this;
 		logger = this.getLogger();
 
 		protections = new ProtectedBlocks();
+		placedBlocks = new PlacedBlocksTracker();
 
 		// load configuration
 		this.loadConfig();
 
 		dataStore = new FlatFileDataStore();
 
-		// start the task to regularly give players the points they've earned for play time 20L ~ 1 second
-		Bukkit.getScheduler().runTaskTimer(this, new DeliverPointsTask(), 20L * 60, 20L * 60);
+		// start the task to regularly check which players are afk, and therefore don't earn points for play time
+		afkCheckTask = new AfkCheckTask();
+		Bukkit.getScheduler().runTaskTimer(this, afkCheckTask, 1L, 1L);
+
+		onlinePlayers = new OnlinePlayers();
+		moderators = new Moderators();
+		deniedBreakMessages = new DeniedBreakMessages();
+		// players might already be online (after a reload of the plugin):
+		for (Player player : Bukkit.getOnlinePlayers()) {
+			// start their accrual of points for play time
+			onlinePlayers.add(player, dataStore.getOrCreatePlayerData(player));
+			moderators.update(player);
+		}
+
+		// start the task to regularly refresh the cached exemption state and the moderators of online players
+		Bukkit.getScheduler().runTaskTimer(this, new RefreshPermissionsTask(), RefreshPermissionsTask.INTERVAL_TICKS, RefreshPermissionsTask.INTERVAL_TICKS);
 
 		// register event handlers:
 
 		// player events
 		Bukkit.getPluginManager().registerEvents(new PlayerEventHandler(dataStore), this);
 
-		// block events
-		Bukkit.getPluginManager().registerEvents(new BlockEventHandler(dataStore), this);
+		// block and entity events: only registered if required by the configuration
+		blockEventHandler = new BlockEventHandler(dataStore);
+		explosionsListener = new ExplosionsListener();
+		this.updateListeners();
 
-		// entity events
-		Bukkit.getPluginManager().registerEvents(new ExplosionsListener(), this);
+		// world events
+		Bukkit.getPluginManager().registerEvents(new WorldListener(), this);
+		// start loading the placed blocks of the chunks which are already loaded (after a reload of the plugin):
+		for (World world : Bukkit.getWorlds()) {
+			if (protections.getProtections(world) != null) placedBlocks.loadChunks(world);
+		}
 
 		// command handler
 		this.getCommand("antixray").setExecutor(new CommandHandler());
@@ -114,12 +183,23 @@ public class AntiXRay extends JavaPlugin {
 
 	// on disable, close any open files and/or database connections
 	public void onDisable() {
-		// ensure all online players get their data saved
+		// send out any collected limit reached notifications
+		if (limitReachedDigest != null) {
+			limitReachedDigest.run();
+		}
+
+		// ensure all online players get their data saved, if it changed
 		for (Player player : Bukkit.getOnlinePlayers()) {
 			UUID uuid = player.getUniqueId();
-			dataStore.savePlayerData(uuid, dataStore.getOrCreatePlayerData(player));
+			PlayerData playerData = dataStore.getOrCreatePlayerData(player);
+			playerData.accruePoints(System.currentTimeMillis());
+			dataStore.savePlayerDataIfDirty(uuid, playerData);
 		}
 
+		// save the placed blocks of the chunks which are still loaded
+		placedBlocks.saveAll();
+		placedBlocks.close();
+
 		dataStore.close();
 	}
 
@@ -149,6 +229,9 @@ public class AntiXRay extends JavaPlugin {
 		config_ignoreMaxPointsForBlockRatio = baseSection.getBoolean("IgnoreMaxPointsForBlockRatio", true);
 		config_exemptCreativeModePlayers = baseSection.getBoolean("ExemptCreativeModePlayers", true);
 		config_notifyOnLimitReached = baseSection.getBoolean("NotifyOnMiningLimitReached", false);
+		config_notificationDigestInterval = Math.max(0, baseSection.getInt("NotificationDigestIntervalSeconds", 0));
+		config_deniedBreakMessageCooldown = Math.max(0L, baseSection.getLong("DeniedBreakMessageCooldownMillis", 1000L));
+		config_autosaveInterval = Math.max(0, baseSection.getInt("AutosaveIntervalMinutes", 5));
 
 		// default max height: only checks for blocks broken below this height
 		int defaultHeight = baseSection.getInt("DefaultMaxHeight", 63);
@@ -162,9 +245,17 @@ public class AntiXRay extends JavaPlugin {
 		baseSection.set("IgnoreMaxPointsForBlockRatio", config_ignoreMaxPointsForBlockRatio);
 		baseSection.set("ExemptCreativeModePlayers", config_exemptCreativeModePlayers);
 		baseSection.set("NotifyOnMiningLimitReached", config_notifyOnLimitReached);
+		baseSection.set("NotificationDigestIntervalSeconds", config_notificationDigestInterval);
+		baseSection.set("DeniedBreakMessageCooldownMillis", config_deniedBreakMessageCooldown);
+		baseSection.set("AutosaveIntervalMinutes", config_autosaveInterval);
 
 		baseSection.set("DefaultMaxHeight", defaultHeight);
 
+		// load the custom block groups, which can be used instead of single block types:
+		ConfigurationSection blockGroupsSection = baseSection.getConfigurationSection("BlockGroups");
+		if (blockGroupsSection == null) blockGroupsSection = baseSection.createSection("BlockGroups");
+		this.loadBlockGroups(blockGroupsSection);
+
 		// load the list of default protected blocks:
 		ConfigurationSection defaultProtectionsSection = baseSection.getConfigurationSection("ProtectedBlockValues");
 		List<ProtectedBlock> defaultProtections = this.loadBlockData(defaultProtectionsSection, null, defaultHeight, true);
@@ -183,8 +274,14 @@ public class AntiXRay extends JavaPlugin {
 			ConfigurationSection blockSection = defaultProtectionsSection.createSection(this.toConfigKey(protectedBlock));
 			blockSection.set("Value", protectedBlock.getValue());
 			if (protectedBlock.getMaxHeight() != defaultHeight) blockSection.set("MaxHeight", protectedBlock.getMaxHeight());
+			if (!protectedBlock.getHeightTiers().isEmpty()) this.saveHeightTiers(blockSection, "HeightTiers", protectedBlock.getHeightTiers());
 		}
 
+		// load the rules which change the value of protected blocks depending on the context they are broken in:
+		ConfigurationSection valueRulesSection = baseSection.getConfigurationSection("ValueRules");
+		if (valueRulesSection == null) valueRulesSection = baseSection.createSection("ValueRules");
+		List<ValueRule> valueRules = this.loadValueRules(valueRulesSection);
+
 		// read world (specific) data:
 		Map<String, List<ProtectedBlock>> allWorldsProtections = new HashMap<>();
 
@@ -223,12 +320,10 @@ public class AntiXRay extends JavaPlugin {
 		for (String worldName : worldsSection.getKeys(false)) {
 			List<ProtectedBlock> worldProtections = new ArrayList<ProtectedBlock>();
 			allWorldsProtections.put(worldName, worldProtections);
-			// add this world:
-			protections.addWorld(worldName);
 			// validate world:
 			World world = getServer().getWorld(worldName);
 			if (world == null) {
-				logger.warning("Configuration: There's no world named \"" + worldName + "\".  Make sure that the worldnames in your config.yml are correct!");
+				logger.warning("Configuration: There's no world named \"" + worldName + "\" loaded (yet).  Make sure that the worldnames in your config.yml are correct!");
 			}
 
 			// world specific informations:
@@ -248,7 +343,7 @@ public class AntiXRay extends JavaPlugin {
 					// the height of the default ores
 					// so users don't have to overwrite the height for each specific default protected block in each
 					// world
-					worldProtections.add(new ProtectedBlock(defaultProtectedBlock.getType(), defaultProtectedBlock.getValue(), worldHeight));
+					worldProtections.add(new ProtectedBlock(defaultProtectedBlock.getConfigKey(), defaultProtectedBlock.getType(), defaultProtectedBlock.getValue(), worldHeight, defaultProtectedBlock.getHeightTiers()));
 				}
 
 				// load world specific protected blocks data:
@@ -269,14 +364,17 @@ public class AntiXRay extends JavaPlugin {
 						Material blockType = protectedBlock.getType();
 						int value = protectedBlock.getValue();
 						int maxHeight = protectedBlock.getMaxHeight();
+						Map<Integer, Integer> heightTiers = protectedBlock.getHeightTiers();
 
-						ProtectedBlock defaultProtection = this.findFirst(defaultProtections, blockType);
+						ProtectedBlock defaultProtection = this.findProtection(defaultProtections, blockType);
 						int defaultBlockValue = defaultProtection != null ? defaultProtection.getValue() : 0;
 						int defaultMaxBlockHeight = (defaultProtection != null) && !worldHeightSet ? defaultProtection.getMaxHeight() : worldHeight;
+						Map<Integer, Integer> defaultHeightTiers = defaultProtection != null ? defaultProtection.getHeightTiers() : Collections.<Integer, Integer> emptyMap();
 
 						String blockNode = worldName + DOT + "ProtectedBlocks" + DOT + this.toConfigKey(protectedBlock);
 						if (value != defaultBlockValue) worldsSection.set(blockNode + DOT + "Value", value);
 						if (maxHeight != defaultMaxBlockHeight) worldsSection.set(blockNode + DOT + "MaxHeight", maxHeight);
+						if (!heightTiers.equals(defaultHeightTiers)) this.saveHeightTiers(worldsSection, blockNode + DOT + "HeightTiers", heightTiers);
 					}
 				}
 			} else {
@@ -288,14 +386,24 @@ public class AntiXRay extends JavaPlugin {
 		// clear old loaded world protections:
 		protections.clear();
 
-		// set the loaded protections for all worlds:
+		// compile and set the loaded protections for all worlds:
 		for (Entry<String, List<ProtectedBlock>> worldData : allWorldsProtections.entrySet()) {
 			String worldName = worldData.getKey();
-			for (ProtectedBlock protectedBlock : worldData.getValue()) {
-				protections.addProtection(worldName, protectedBlock);
+			List<ValueRule> worldValueRules = new ArrayList<>();
+			for (ValueRule valueRule : valueRules) {
+				if (valueRule.appliesToWorld(worldName)) {
+					worldValueRules.add(valueRule);
+				}
 			}
+			protections.setProtections(worldName, worldData.getValue(), worldValueRules);
 		}
 
+		// (re-)start collecting limit reached notifications, if notification digests are enabled:
+		this.startLimitReachedDigest();
+
+		// (re-)start saving changed player data regularly, if enabled:
+		this.startAutosave();
+
 		// save config (writes default values):
 		try {
 			config.save(DataStore.configFilePath);
@@ -304,8 +412,69 @@ public class AntiXRay extends JavaPlugin {
 		}
 	}
 
-	private ProtectedBlock findFirst(List<ProtectedBlock> protectedBlocks, Material blockType) {
-		for (ProtectedBlock protectedBlock : protectedBlocks) {
+	private void startLimitReachedDigest() {
+		// stop the previous digest, sending what it has collected so far
+		if (limitReachedDigestTask != null) {
+			limitReachedDigestTask.cancel();
+			limitReachedDigestTask = null;
+			limitReachedDigest.run();
+			limitReachedDigest = null;
+		}
+
+		if (config_notifyOnLimitReached && config_notificationDigestInterval > 0) {
+			long intervalTicks = 20L * config_notificationDigestInterval;
+			limitReachedDigest = new LimitReachedDigest();
+			limitReachedDigestTask = Bukkit.getScheduler().runTaskTimer(this, limitReachedDigest, intervalTicks, intervalTicks);
+		}
+	}
+
+	private void startAutosave() {
+		if (autosaveTask != null) {
+			autosaveTask.cancel();
+			autosaveTask = null;
+		}
+
+		if (config_autosaveInterval > 0) {
+			long intervalTicks = 20L * 60 * config_autosaveInterval;
+			autosaveTask = Bukkit.getScheduler().runTaskTimer(this, new AutosaveTask(), intervalTicks, intervalTicks);
+		}
+	}
+
+	// registers or unregisters the listeners whose events are only relevant for certain configurations,
+	// so that no events get dispatched to us for unused features
+	void updateListeners() {
+		// block events are only relevant if breaking any protected block can actually change points
+		boolean blockEventsRequired = protections.hasBlockBreakProtections();
+		if (blockEventsRequired != blockEventHandlerRegistered) {
+			if (blockEventsRequired) {
+				Bukkit.getPluginManager().registerEvents(blockEventHandler, this);
+			} else {
+				HandlerList.unregisterAll(blockEventHandler);
+			}
+			blockEventHandlerRegistered = blockEventsRequired;
+			AntiXRay.debug((blockEventsRequired ? "Registered" : "Unregistered") + " block event handler.");
+		}
+
+		// the protections might have changed, so the cached protected chunk sections are outdated:
+		explosionsListener.clearSectionsCache();
+
+		// explosion events are only relevant if there are protected blocks with a value
+		boolean explosionEventsRequired = protections.hasExplosionProtections();
+		if (explosionEventsRequired != explosionsListenerRegistered) {
+			if (explosionEventsRequired) {
+				Bukkit.getPluginManager().registerEvents(explosionsListener, this);
+			} else {
+				HandlerList.unregisterAll(explosionsListener);
+			}
+			explosionsListenerRegistered = explosionEventsRequired;
+			AntiXRay.debug((explosionEventsRequired ? "Registered" : "Unregistered") + " explosions listener.");
+		}
+	}
+
+	// finds the effective protection for the given block type: later protections replace earlier ones
+	private ProtectedBlock findProtection(List<ProtectedBlock> protectedBlocks, Material blockType) {
+		for (int i = protectedBlocks.size() - 1; i >= 0; i--) {
+			ProtectedBlock protectedBlock = protectedBlocks.get(i);
 			if (protectedBlock.getType() == blockType) {
 				return protectedBlock;
 			}
@@ -314,11 +483,61 @@ public class AntiXRay extends JavaPlugin {
 	}
 
 	private String toConfigKey(ProtectedBlock protectedBlock) {
-		return this.toConfigKey(protectedBlock.getType());
+		return protectedBlock.getConfigKey();
+	}
+
+	// whether the given config key references a tag or custom group of blocks, instead of a single block type
+	private boolean isBlockGroupKey(String configKey) {
+		return configKey.startsWith("#");
+	}
+
+	// resolves the block types referenced by the given config key: either a single block type, a custom block group
+	// ('#rare_ores') or a tag ('#minecraft:diamond_ores'); returns null (and logs a warning) if nothing was found
+	private Set<Material> resolveBlockTypes(String configKey) {
+		if (!this.isBlockGroupKey(configKey)) {
+			Material blockType = Material.matchMaterial(configKey);
+			if (blockType == null) {
+				logger.warning("Material not found: " + configKey);
+				return null;
+			}
+			return EnumSet.of(blockType);
+		}
+
+		String groupName = configKey.substring(1);
+		Set<Material> blockGroup = blockGroups.get(groupName);
+		if (blockGroup != null) return blockGroup;
+
+		// tag, with minecraft as default namespace:
+		int separatorIndex = groupName.indexOf(':');
+		String namespace = (separatorIndex == -1 ? NamespacedKey.MINECRAFT : groupName.substring(0, separatorIndex));
+		String key = groupName.substring(separatorIndex + 1);
+		Tag<Material> tag = null;
+		try {
+			tag = Bukkit.getTag(Tag.REGISTRY_BLOCKS, new NamespacedKey(namespace.toLowerCase(Locale.ROOT), key.toLowerCase(Locale.ROOT)), Material.class);
+		} catch (IllegalArgumentException e) {
+			// invalid key
+		}
+		if (tag == null) {
+			logger.warning("Block group or tag not found: " + configKey);
+			return null;
+		}
+		Set<Material> blockTypes = EnumSet.noneOf(Material.class);
+		blockTypes.addAll(tag.getValues());
+		return blockTypes;
 	}
 
-	private String toConfigKey(Material blockType) {
-		return blockType.name();
+	// utility method for loading the custom block groups <groupName -> block types> from the given config section
+	// groups can contain block types, tags and previously defined groups
+	private void loadBlockGroups(ConfigurationSection section) {
+		blockGroups = new HashMap<>();
+		for (String groupName : section.getKeys(false)) {
+			Set<Material> blockTypes = EnumSet.noneOf(Material.class);
+			for (String configKey : section.getStringList(groupName)) {
+				Set<Material> resolvedBlockTypes = this.resolveBlockTypes(configKey);
+				if (resolvedBlockTypes != null) blockTypes.addAll(resolvedBlockTypes);
+			}
+			blockGroups.put(groupName, blockTypes);
+		}
 	}
 
 	// utility method for loading block data from the given config section
@@ -326,45 +545,156 @@ public class AntiXRay extends JavaPlugin {
 		List<ProtectedBlock> protectedBlocks = new ArrayList<>();
 		if (section == null) return protectedBlocks;
 
+		// tags and groups first, so that entries for specific block types take precedence over them:
+		List<String> blockConfigKeys = new ArrayList<>();
 		for (String blockConfigKey : section.getKeys(false)) {
+			if (this.isBlockGroupKey(blockConfigKey)) blockConfigKeys.add(blockConfigKey);
+		}
+		for (String blockConfigKey : section.getKeys(false)) {
+			if (!this.isBlockGroupKey(blockConfigKey)) blockConfigKeys.add(blockConfigKey);
+		}
+
+		Set<Material> loadedBlockTypes = EnumSet.noneOf(Material.class);
+
+		for (String blockConfigKey : blockConfigKeys) {
 			ConfigurationSection blockSection = section.getConfigurationSection(blockConfigKey);
 			if (blockSection == null) continue; // no valid section
 
-			// determine block type by material name:
-			Material blockType = Material.matchMaterial(blockConfigKey);
-			if (blockType == null) {
-				logger.warning("Material not found: " + blockConfigKey);
+			// determine block types by material name, or by tag or group name:
+			Set<Material> blockTypes = this.resolveBlockTypes(blockConfigKey);
+			if (blockTypes == null) continue;
+
+			for (Material blockType : blockTypes) {
+				protectedBlocks.add(this.loadBlockData(blockSection, blockConfigKey, blockType, defaultProtectedBlocks, defaultHeight, defaultHeightExplicitlySet));
+
+				if (!this.isBlockGroupKey(blockConfigKey) && !loadedBlockTypes.add(blockType)) {
+					logger.warning("Duplicate protected block type: " + blockConfigKey + ". Only the last entry for " + blockType.name() + " is used.");
+				}
+			}
+		}
+		return protectedBlocks;
+	}
+
+	// utility method for loading the data of a single block type from the given block config section
+	private ProtectedBlock loadBlockData(ConfigurationSection blockSection, String blockConfigKey, Material blockType, List<ProtectedBlock> defaultProtectedBlocks, int defaultHeight,
+			boolean defaultHeightExplicitlySet) {
+		// if we have default block data for this specific block, use that for default values:
+		ProtectedBlock defaultData = (defaultProtectedBlocks != null ? this.findProtection(defaultProtectedBlocks, blockType) : null);
+
+		// data for this type of block:
+		int defaultValue = (defaultData != null ? defaultData.getValue() : 0);
+		int value = blockSection.getInt("Value", defaultValue);
+
+		// only uses the default block specific max height value if it is available and no (world specific) max
+		// height value was set:
+		int effectiveDefaultHeight = (defaultData != null) && !defaultHeightExplicitlySet ? defaultData.getMaxHeight() : defaultHeight;
+		int height = blockSection.getInt("MaxHeight", effectiveDefaultHeight);
+
+		// additional height tiers with different values, for example for deeper layers:
+		Map<Integer, Integer> heightTiers;
+		ConfigurationSection heightTiersSection = blockSection.getConfigurationSection("HeightTiers");
+		if (heightTiersSection != null) {
+			heightTiers = this.loadHeightTiers(heightTiersSection, blockConfigKey);
+		} else {
+			heightTiers = (defaultData != null ? defaultData.getHeightTiers() : Collections.<Integer, Integer> emptyMap());
+		}
+
+		// initialize the ProtectedBlock with the configured block type, height and height tiers
+		return new ProtectedBlock(blockConfigKey, blockType, value, height, heightTiers);
+	}
+
+	// utility method for loading height tiers <maxHeight -> value> from the given config section
+	private Map<Integer, Integer> loadHeightTiers(ConfigurationSection section, String blockConfigKey) {
+		Map<Integer, Integer> heightTiers = new TreeMap<>();
+		for (String heightKey : section.getKeys(false)) {
+			int height;
+			try {
+				height = Integer.parseInt(heightKey);
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid height tier for " + blockConfigKey + ": " + heightKey);
 				continue;
 			}
+			heightTiers.put(height, section.getInt(heightKey));
+		}
+		return heightTiers;
+	}
 
-			// if we have default block data for this specific block, use that for default values:
-			ProtectedBlock defaultData = (defaultProtectedBlocks != null ? this.findFirst(defaultProtectedBlocks, blockType) : null);
+	// utility method for writing height tiers back to config
+	// an empty section is kept, so that world specific protections can explicitly remove the default height tiers
+	private void saveHeightTiers(ConfigurationSection section, String path, Map<Integer, Integer> heightTiers) {
+		section.createSection(path);
+		for (Entry<Integer, Integer> heightTier : heightTiers.entrySet()) {
+			section.set(path + DOT + heightTier.getKey(), heightTier.getValue());
+		}
+	}
 
-			// data for this type of block:
-			int defaultValue = (defaultData != null ? defaultData.getValue() : 0);
-			int value = blockSection.getInt("Value", defaultValue);
+	// utility method for loading the value rules from the given config section, keeping their order
+	private List<ValueRule> loadValueRules(ConfigurationSection section) {
+		List<ValueRule> valueRules = new ArrayList<>();
+		if (section == null) return valueRules;
+
+		for (String ruleName : section.getKeys(false)) {
+			ConfigurationSection ruleSection = section.getConfigurationSection(ruleName);
+			if (ruleSection == null) continue; // no valid section
+
+			// conditions: unset conditions match everything
+			Set<String> worldNames = ruleSection.isSet("Worlds") ? new HashSet<>(ruleSection.getStringList("Worlds")) : null;
+			Set<Material> blockTypes = ruleSection.isSet("Blocks") ? this.loadMaterials(ruleSection.getStringList("Blocks")) : null;
+			Set<Material> tools = ruleSection.isSet("Tools") ? this.loadMaterials(ruleSection.getStringList("Tools")) : null;
+			Set<Biome> biomes = ruleSection.isSet("Biomes") ? this.loadBiomes(ruleSection.getStringList("Biomes")) : null;
+			int silkTouch = ValueRule.ANY;
+			if (ruleSection.isSet("SilkTouch")) {
+				silkTouch = ruleSection.getBoolean("SilkTouch") ? ValueRule.WITH : ValueRule.WITHOUT;
+			}
+			int minFortune = ruleSection.getInt("MinFortune", 0);
+			int maxFortune = ruleSection.getInt("MaxFortune", Integer.MAX_VALUE);
+
+			// effect: either a fixed value, or a multiplier for the block's value
+			Integer value = ruleSection.isSet("Value") ? ruleSection.getInt("Value") : null;
+			double multiplier = ruleSection.getDouble("Multiplier", 1.0D);
+			if (value == null && !ruleSection.isSet("Multiplier")) {
+				logger.warning("Value rule '" + ruleName + "' has neither a Value nor a Multiplier. Ignoring it.");
+				continue;
+			}
 
-			// only uses the default block specific max height value if it is available and no (world specific) max
-			// height value was set:
-			int effectiveDefaultHeight = (defaultData != null) && !defaultHeightExplicitlySet ? defaultData.getMaxHeight() : defaultHeight;
-			int height = blockSection.getInt("MaxHeight", effectiveDefaultHeight);
+			valueRules.add(new ValueRule(worldNames, blockTypes, tools, biomes, silkTouch, minFortune, maxFortune, value, multiplier));
+		}
+		return valueRules;
+	}
 
-			// initialize the ProtectedBlock with the configured block type and height
-			protectedBlocks.add(new ProtectedBlock(blockType, value, height));
-			// TODO warning/error on duplicate block types? Or allow different values for different heights by sorting
-			// protections by their heights?
+	// materials can also be specified by tags and groups
+	private Set<Material> loadMaterials(List<String> configKeys) {
+		Set<Material> materials = EnumSet.noneOf(Material.class);
+		for (String configKey : configKeys) {
+			Set<Material> resolvedMaterials = this.resolveBlockTypes(configKey);
+			if (resolvedMaterials != null) materials.addAll(resolvedMaterials);
 		}
-		return protectedBlocks;
+		return materials;
+	}
+
+	private Set<Biome> loadBiomes(List<String> biomeNames) {
+		Set<Biome> biomes = EnumSet.noneOf(Biome.class);
+		for (String biomeName : biomeNames) {
+			try {
+				biomes.add(Biome.valueOf(biomeName.toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				logger.warning("Biome not found: " + biomeName);
+			}
+		}
+		return biomes;
 	}
 
 	static ProtectedBlocks getProtections() {
 		return AntiXRay.instance.protections;
 	}
 
+	static PlacedBlocksTracker getPlacedBlocks() {
+		return AntiXRay.instance.placedBlocks;
+	}
+
 	// sends a message to a player
 	static void sendMessage(CommandSender receiver, Messages messageID, String... args) {
-		String message = getMessage(messageID, args);
-		sendMessage(receiver, message);
+		AntiXRay.instance.dataStore.getMessageTemplate(messageID).send(receiver, args);
 	}
 
 	// gets a message from the datastore by the given id
@@ -372,17 +702,15 @@ public class AntiXRay extends JavaPlugin {
 		return AntiXRay.instance.dataStore.getMessage(messageID, args);
 	}
 
-	// sends a message to a player
-	static void sendMessage(CommandSender receiver, String message) {
-		// split on 'real' new lines and on escaped new line character sequence:
-		String[] messages = message.split("\n|\\\\n");
-		for (String msg : messages) {
-			if (receiver == null) {
-				logger.info(msg);
-			} else {
-				receiver.sendMessage(msg);
-			}
-		}
+	// whether the given player is exempt from the rules when being in the given game mode
+	static boolean isExempt(Player player, GameMode gameMode) {
+		// players with the bypass permission
+		if (player.hasPermission("antixray.bypass")) return true;
+
+		// players in creative mode
+		if (AntiXRay.instance.config_exemptCreativeModePlayers && gameMode == GameMode.CREATIVE) return true;
+
+		return false;
 	}
 
 	// creates an easy-to-read location description
@@ -0,0 +1,41 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+// regularly saves the data of the online players which changed since it was last saved, so that a crash doesn't lose
+// a whole play session of changes (for example points spent on protected blocks)
+class AutosaveTask implements Runnable {
+
+	AutosaveTask() {
+	}
+
+	@Override
+	public void run() {
+		DataStore dataStore = AntiXRay.instance.dataStore;
+		OnlinePlayers onlinePlayers = AntiXRay.instance.onlinePlayers;
+		int saved = 0;
+		for (int slot = 0, size = onlinePlayers.size(); slot < size; slot++) {
+			PlayerData playerData = onlinePlayers.getPlayerData(slot);
+			if (!playerData.isDirty()) continue;
+			dataStore.savePlayerData(onlinePlayers.getPlayer(slot).getUniqueId(), playerData);
+			saved++;
+		}
+		AntiXRay.debug("Autosave: saved the data of " + saved + " of " + onlinePlayers.size() + " online players.");
+	}
+}
@@ -20,15 +20,20 @@ package me.ryanhamshire.AntiXRay;
 
 import java.util.List;
 
-import org.bukkit.Bukkit;
-import org.bukkit.GameMode;
+import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 
 // event handlers related to blocks
 class BlockEventHandler implements Listener {
@@ -44,84 +49,92 @@ class BlockEventHandler implements Listener {
 	// when a player breaks a block... priority high, so other plugins can first cancel block breaking
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
 	void onBlockBreak(BlockBreakEvent breakEvent) {
-		Player player = breakEvent.getPlayer();
-
-		// ignore players with the bypass permission
-		if (player.hasPermission("antixray.bypass")) return;
-
-		// ignore players in creative mode
-		if (AntiXRay.instance.config_exemptCreativeModePlayers && player.getGameMode() == GameMode.CREATIVE) return;
-
 		Block block = breakEvent.getBlock();
 
 		// get block protections for this world
-		List<ProtectedBlock> protections = AntiXRay.getProtections().getProtections(block.getWorld().getName());
+		WorldProtections protections = AntiXRay.getProtections().getProtections(block.getWorld());
 
 		// if there are no protections for this world, ignore the event
-		if (protections == null || protections.isEmpty()) return;
+		if (protections == null) return;
+
+		// quickly ignore blocks which aren't protected (most of the broken blocks), before doing any more expensive checks
+		Material blockType = block.getType();
+		int height = block.getY();
+		if (!protections.mightBeProtected(blockType, height)) return;
 
-		// allows a player to break a block he just placed (he must have been charged points already to collect it in the first place) without cost
+		// allows breaking blocks placed by players (they must have been charged points already to collect them in the first place) without cost
+		// also done for exempt players, so that the record doesn't outlive the block (and makes a later block at this position free to break)
+		if (AntiXRay.getPlacedBlocks().remove(block.getWorld(), block.getX(), height, block.getZ())) return;
+
+		Player player = breakEvent.getPlayer();
 		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
-		if (playerData.lastPlacedBlockLocation != null && block.getLocation().equals(playerData.lastPlacedBlockLocation)) {
-			playerData.lastPlacedBlockLocation = null;
-			return;
-		}
 
-		int height = block.getLocation().getBlockY();
-
-		// look for the block's type in the list of protected blocks
-		for (ProtectedBlock protectedBlock : protections) {
-			// if it's in the list, consider whether this player should be permitted to break the block
-			if (protectedBlock.isOfSameType(block) && height <= protectedBlock.getMaxHeight()) {
-				// if he doesn't have enough points
-				if (protectedBlock.getValue() > 0 && playerData.points < protectedBlock.getValue()) {
-					String reachedLimitCounterString = String.valueOf(playerData.reachedLimitCount);
-
-					if (!playerData.reachedLimitThisSession) {
-						// avoid doing this twice in one play session for this player
-						playerData.reachedLimitThisSession = true;
-
-						// increment reached-limit-counter
-						playerData.reachedLimitCount += 1;
-						// update reachedLimitCounter string
-						reachedLimitCounterString = String.valueOf(playerData.reachedLimitCount);
-
-						// if configured to do so, make an entry in the log and notify any online moderators
-						if (AntiXRay.instance.config_notifyOnLimitReached) {
-							// make log entry
-							AntiXRay.logger.info(player.getName() + " reached the mining speed limit at " + AntiXRay.getfriendlyLocationString(player.getLocation())
-									+ ". He already reached it for about " + reachedLimitCounterString + " times.");
-
-							// notify online moderators
-							for (Player moderator : Bukkit.getOnlinePlayers()) {
-								if (moderator.hasPermission("antixray.monitorxrayers")) {
-									AntiXRay.sendMessage(moderator, Messages.AdminNotification, player.getName(), reachedLimitCounterString);
-								}
-							}
+		// ignore players with the bypass permission, or in creative mode
+		if (playerData.isExempt()) return;
+
+		// look up the block's type in the protected blocks of this world (it is protected, as checked above)
+		ProtectedBlock protectedBlock = protections.getProtection(blockType);
+
+		// get the block's value at this height
+		int value = protectedBlock.getValue(height);
+
+		// if it isn't protected at this height, ignore the event
+		if (value == ProtectedBlock.NOT_PROTECTED) return;
+
+		// apply the value rules (tool, enchantments, biome, ..) for this type of block, if there are any
+		ValueRules valueRules = protections.getValueRules(blockType);
+		if (valueRules != null) value = valueRules.apply(value, player, block);
+
+		// give him the points he earned for playing since the last time
+		playerData.accruePoints(System.currentTimeMillis());
+
+		// consider whether this player should be permitted to break the block:
+		// if he doesn't have enough points
+		if (value > 0 && playerData.points < value) {
+			if (!playerData.hasReachedLimitThisSession()) {
+				// avoid doing this twice in one play session for this player
+				playerData.setReachedLimitThisSession(true);
+
+				// increment reached-limit-counter
+				playerData.reachedLimitCount += 1;
+				String reachedLimitCounterString = String.valueOf(playerData.reachedLimitCount);
+
+				// if configured to do so, make an entry in the log and notify any online moderators
+				if (AntiXRay.instance.config_notifyOnLimitReached) {
+					String location = AntiXRay.getfriendlyLocationString(player.getLocation());
+					if (AntiXRay.instance.limitReachedDigest != null) {
+						// collect it for the next summary
+						AntiXRay.instance.limitReachedDigest.add(player.getName(), playerData.reachedLimitCount, location);
+					} else {
+						// make log entry
+						AntiXRay.logger.info(player.getName() + " reached the mining speed limit at " + location
+								+ ". He already reached it for about " + reachedLimitCounterString + " times.");
+
+						// notify online moderators
+						for (Player moderator : AntiXRay.instance.moderators.getOnlineModerators()) {
+							AntiXRay.sendMessage(moderator, Messages.AdminNotification, player.getName(), reachedLimitCounterString);
 						}
 					}
+				}
+			}
 
-					// estimate how long it will be before he can break this block
-					int minutesUntilBreak = (int) ((protectedBlock.getValue() - playerData.points) / (float) (AntiXRay.instance.config_pointsPerHour) * 60);
-					if (minutesUntilBreak == 0) minutesUntilBreak = 1;
-
-					// inform him
-					AntiXRay.sendMessage(player, Messages.CantBreakYet, String.valueOf(minutesUntilBreak), reachedLimitCounterString);
+			// cancel the breakage
+			breakEvent.setCancelled(true);
 
-					// cancel the breakage
-					breakEvent.setCancelled(true);
+			// estimate how long it will be before he can break this block
+			int minutesUntilBreak = (int) ((value - playerData.points) / (float) (AntiXRay.instance.config_pointsPerHour) * 60);
+			if (minutesUntilBreak == 0) minutesUntilBreak = 1;
 
-				} else {
-					// otherwise, subtract the value of the block from his points
-					playerData.points -= protectedBlock.getValue();
-					// make sure that the players point are lower than the maxPoints limit:
-					if (!AntiXRay.instance.config_ignoreMaxPointsForBlockRatio && playerData.points > AntiXRay.instance.config_maxPoints) {
-						playerData.points = AntiXRay.instance.config_maxPoints;
-					}
-				}
+			// inform him, but only once per cooldown, so that breaking many blocks at once (for example via vein miner
+			// plugins) doesn't flood him with messages
+			AntiXRay.instance.deniedBreakMessages.onBreakDenied(player, playerData, minutesUntilBreak);
 
-				// once a match is found, no need to look further
-				return;
+		} else {
+			// otherwise, subtract the value of the block from his points
+			playerData.points -= value;
+			// make sure that the players point are lower than the maxPoints limit:
+			if (!AntiXRay.instance.config_ignoreMaxPointsForBlockRatio && playerData.points > AntiXRay.instance.config_maxPoints) {
+				playerData.points = AntiXRay.instance.config_maxPoints;
 			}
 		}
 	}
@@ -129,21 +142,74 @@ class BlockEventHandler implements Listener {
 	// when a player places a block...
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
 	void onBlockPlace(BlockPlaceEvent placeEvent) {
+		Block block = placeEvent.getBlockPlaced();
+
+		// if the block's world isn't in the list of controlled worlds, ignore the event
+		WorldProtections protections = AntiXRay.getProtections().getProtections(block.getWorld());
+		if (protections == null) return;
+
+		// only placed blocks of protected types need to be remembered
+		if (protections.getProtection(block.getType()) == null) return;
+
 		Player player = placeEvent.getPlayer();
+		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
 
-		// ignore players with the bypass permission
-		if (player.hasPermission("antixray.bypass")) return;
+		// ignore players with the bypass permission, or in creative mode: blocks they place shall not be free to break
+		if (playerData.isExempt()) return;
 
-		// ignore players in creative mode
-		if (AntiXRay.instance.config_exemptCreativeModePlayers && player.getGameMode() == GameMode.CREATIVE) return;
+		// allows breaking this block later on without cost (the player must have been charged points already to collect it in the first place)
+		AntiXRay.getPlacedBlocks().add(block.getWorld(), block.getX(), block.getY(), block.getZ());
+	}
 
-		Block block = placeEvent.getBlockPlaced();
+	// exploded blocks are gone: forget those which were placed by players, so that later blocks at their positions
+	// aren't free to break
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onEntityExplode(EntityExplodeEvent event) {
+		this.forgetPlacedBlocks(event.getLocation().getWorld(), event.blockList());
+	}
 
-		// if the block's world isn't in the list of controlled worlds, ignore the event
-		if (!AntiXRay.getProtections().isWorldProtected(block.getWorld().getName())) return;
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onBlockExplode(BlockExplodeEvent event) {
+		this.forgetPlacedBlocks(event.getBlock().getWorld(), event.blockList());
+	}
 
-		// allows a player to break a block he just placed (he must have been charged points already to collect it in the first place) without cost
-		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
-		playerData.lastPlacedBlockLocation = block.getLocation();
+	private void forgetPlacedBlocks(World world, List<Block> blocks) {
+		if (blocks.isEmpty()) return;
+		// placed blocks are only tracked in worlds with protections
+		if (AntiXRay.getProtections().getProtections(world) == null) return;
+		AntiXRay.getPlacedBlocks().removeAll(world, blocks);
+	}
+
+	// placed blocks which get moved by pistons stay free to break at their new positions
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPistonExtend(BlockPistonExtendEvent event) {
+		this.movePlacedBlocks(event.getBlocks(), event.getDirection());
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPistonRetract(BlockPistonRetractEvent event) {
+		this.movePlacedBlocks(event.getBlocks(), event.getDirection());
+	}
+
+	private void movePlacedBlocks(List<Block> blocks, BlockFace direction) {
+		if (blocks.isEmpty()) return;
+		World world = blocks.get(0).getWorld();
+		// placed blocks are only tracked in worlds with protections
+		if (AntiXRay.getProtections().getProtections(world) == null) return;
+		PlacedBlocksTracker placedBlocks = AntiXRay.getPlacedBlocks();
+
+		// first remove all moved blocks from their old positions, since they might move into each other's positions
+		int movedCount = 0;
+		Block[] moved = new Block[blocks.size()];
+		for (Block block : blocks) {
+			// pistons don't wait for placed blocks to be loaded: blocks of such chunks count as not placed
+			if (placedBlocks.removeIfLoaded(world, block.getX(), block.getY(), block.getZ())) {
+				moved[movedCount++] = block;
+			}
+		}
+		for (int i = 0; i < movedCount; i++) {
+			Block block = moved[i];
+			placedBlocks.addIfLoaded(world, block.getX() + direction.getModX(), block.getY() + direction.getModY(), block.getZ() + direction.getModZ());
+		}
 	}
 }
@@ -0,0 +1,54 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+// utilities for packing block and chunk coordinates into primitive keys, so that positions can be stored and compared
+// without allocating Location objects
+final class BlockPositions {
+
+	private BlockPositions() {
+	}
+
+	// packs the coordinates of a chunk
+	static long packChunk(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	// packs the coordinates of a chunk section: 24 bits for the chunk x and z coordinates each, 16 bits for the section y
+	static long packSection(int chunkX, int sectionY, int chunkZ) {
+		return ((long) chunkX << 40) | ((chunkZ & 0xFFFFFFL) << 16) | (sectionY & 0xFFFFL);
+	}
+
+	static int unpackSectionChunkX(long sectionKey) {
+		return (int) (sectionKey >> 40);
+	}
+
+	static int unpackSectionY(long sectionKey) {
+		return (int) (sectionKey << 48 >> 48);
+	}
+
+	static int unpackSectionChunkZ(long sectionKey) {
+		return (int) (sectionKey << 24 >> 40);
+	}
+
+	// packs the position of a block relative to its chunk: 4 bits for x and z each, the remaining bits for y
+	static int packInChunk(int x, int y, int z) {
+		return (y << 8) | ((z & 15) << 4) | (x & 15);
+	}
+}
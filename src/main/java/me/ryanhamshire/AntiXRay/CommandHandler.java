@@ -40,8 +40,11 @@ class CommandHandler implements CommandExecutor {
 				if (sender.hasPermission("antixray.reload")) {
 					// reload configuration
 					AntiXRay.instance.loadConfig();
+					AntiXRay.instance.updateListeners();
 					// reload messages
 					AntiXRay.instance.dataStore.initialize();
+					// the creative mode exemption might have changed
+					new RefreshPermissionsTask().run();
 
 					AntiXRay.sendMessage(sender, Messages.ReloadDone);
 				} else AntiXRay.sendMessage(sender, Messages.NoPermission);
@@ -131,6 +134,8 @@ class CommandHandler implements CommandExecutor {
 										// set the points:
 										Integer newPoints = getNumber(args[3]);
 										if (newPoints != null) {
+											// the points earned until now get replaced as well
+											playerData.accruePoints(System.currentTimeMillis());
 											int oldPoints = playerData.points;
 
 											// only change, if necessary:
@@ -198,6 +203,8 @@ class CommandHandler implements CommandExecutor {
 		if (playerData == null) {
 			AntiXRay.sendMessage(sender, Messages.NoPlayerDataFound, targetName);
 		} else {
+			// include the points the player earned since the last accrual, if he is online
+			playerData.accruePoints(System.currentTimeMillis());
 			AntiXRay.sendMessage(sender, Messages.CurrentPoints, targetName, String.valueOf(playerData.points));
 			AntiXRay.sendMessage(sender, Messages.ReachedLimitCount, targetName, String.valueOf(playerData.reachedLimitCount));
 		}
@@ -20,6 +20,8 @@ package me.ryanhamshire.AntiXRay;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -34,11 +36,37 @@ abstract class DataStore {
 	final static String configFilePath = dataLayerFolderPath + File.separator + "config.yml";
 	final static String messagesFilePath = dataLayerFolderPath + File.separator + "messages.yml";
 
-	// in-memory cache for player data
-	private final Map<UUID, PlayerData> playerUUIDToPlayerDataMap = new HashMap<UUID, PlayerData>();
+	// in-memory cache for player data, of the online players
+	private final Map<UUID, PlayerData> playerUUIDToPlayerDataMap = new ConcurrentHashMap<UUID, PlayerData>();
 
-	// in-memory cache for messages
-	private String[] messages;
+	// loads of stored player data which are in progress, or which were done in advance for players who are currently
+	// logging in: there is at most one load per uuid, which is shared by all threads requesting that player's data
+	private final ConcurrentHashMap<UUID, PlayerDataLoad> playerDataLoads = new ConcurrentHashMap<UUID, PlayerDataLoad>();
+
+	// if a player whose data was prefetched never joins (for example, because the login failed), the data expires
+	private static final long PREFETCH_EXPIRATION_MILLIS = 60L * 1000L;
+
+	private static class PlayerDataLoad {
+
+		// completed with null if there is no stored data for the player
+		private final CompletableFuture<PlayerData> result = new CompletableFuture<PlayerData>();
+		private final long time = System.currentTimeMillis();
+		// whether this load was started in advance for a login, and is kept until the player joins
+		private final boolean prefetch;
+		// whether it is known that there is no old player data (from pre MC 1.8) to import
+		private volatile boolean noOldPlayerData = false;
+
+		private PlayerDataLoad(boolean prefetch) {
+			this.prefetch = prefetch;
+		}
+
+		private boolean isExpired(long now) {
+			return prefetch && result.isDone() && now - time > PREFETCH_EXPIRATION_MILLIS;
+		}
+	}
+
+	// in-memory cache for messages, precompiled into templates
+	private MessageTemplate[] messages;
 
 	// initialization varies depending on flat file or database storage
 	void initialize() {
@@ -51,6 +79,63 @@ abstract class DataStore {
 		playerUUIDToPlayerDataMap.remove(uuid);
 	}
 
+	// gets the load of the stored data of the given player: either joins a load in progress, or loads the data in the
+	// current thread
+	private PlayerDataLoad loadStoredPlayerData(UUID uuid, boolean prefetch) {
+		PlayerDataLoad load = playerDataLoads.get(uuid);
+		if (load != null && load.isExpired(System.currentTimeMillis())) {
+			playerDataLoads.remove(uuid, load);
+			load = null;
+		}
+		if (load == null) {
+			PlayerDataLoad newLoad = new PlayerDataLoad(prefetch);
+			load = playerDataLoads.putIfAbsent(uuid, newLoad);
+			if (load == null) {
+				// this thread does the load:
+				load = newLoad;
+				try {
+					load.result.complete(this.loadPlayerDataFromStorageIfExist(uuid));
+				} catch (Throwable e) {
+					playerDataLoads.remove(uuid, load);
+					load.result.completeExceptionally(e);
+				}
+			}
+		}
+		return load;
+	}
+
+	// waits for the given load and removes it, unless it is a prefetch kept for the player's join
+	private PlayerData getLoadResult(UUID uuid, PlayerDataLoad load, boolean keepPrefetch) {
+		try {
+			return load.result.join();
+		} finally {
+			if (!keepPrefetch || !load.prefetch) playerDataLoads.remove(uuid, load);
+		}
+	}
+
+	// loads the data of a player who is logging in, so that the main thread doesn't need to access the disk when he
+	// joins, called asynchronously
+	void prefetchPlayerData(UUID uuid, String playerName) {
+		// drop expired data of players who didn't join
+		long now = System.currentTimeMillis();
+		Iterator<PlayerDataLoad> iterator = playerDataLoads.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isExpired(now)) iterator.remove();
+		}
+
+		PlayerDataLoad load = this.loadStoredPlayerData(uuid, true);
+		// importing old player data (from pre MC 1.8) is left to the main thread when the player joins
+		if (load.result.join() == null && !this.isOldPlayerDataExisting(playerName)) {
+			load.noOldPlayerData = true;
+		}
+	}
+
+	// discards the prefetched data of a player, for example because his login failed
+	void discardPrefetchedPlayerData(UUID uuid) {
+		PlayerDataLoad load = playerDataLoads.get(uuid);
+		if (load != null && load.prefetch) playerDataLoads.remove(uuid, load);
+	}
+
 	// retrieves player data from memory or file, as necessary
 	// if the player has never been on the server before, this will return a fresh player data with default values
 	public PlayerData getOrCreatePlayerData(Player player) {
@@ -58,17 +143,30 @@ abstract class DataStore {
 
 		// first, look in memory
 		PlayerData playerData = playerUUIDToPlayerDataMap.get(uuid);
+		if (playerData != null) return playerData;
 
-		// if not there, look on disk
+		// if not there, use the data prefetched during the login, or look on disk
+		PlayerDataLoad load = this.loadStoredPlayerData(uuid, false);
+		playerData = this.getLoadResult(uuid, load, false);
 		if (playerData == null) {
-			playerData = this.loadOrCreatePlayerDataFromStorage(player);
-
-			// shove that new player data into the hash map cache
-			playerUUIDToPlayerDataMap.put(uuid, playerData);
+			if (load.noOldPlayerData) {
+				// there is no stored data for this player
+				playerData = this.getDefaultPlayerData(player);
+			} else {
+				// default data, or imported old player data (the load already showed that there is no stored data)
+				playerData = this.createPlayerData(player);
+			}
 		}
 
-		// try the hash map again. if it's STILL not there, we have a bug to fix
-		return playerUUIDToPlayerDataMap.get(uuid);
+		// initialize the cached exemption state for this play session
+		playerData.setExempt(AntiXRay.isExempt(player, player.getGameMode()));
+
+		// he earns points for playing from now on
+		playerData.accruedUntil = System.currentTimeMillis();
+
+		// shove that new player data into the hash map cache, unless someone else was faster
+		PlayerData existing = playerUUIDToPlayerDataMap.putIfAbsent(uuid, playerData);
+		return existing != null ? existing : playerData;
 	}
 
 	// returns PlayerData for a player with the given uuid and RETURNS NULL if no PlayerData was found for this uuid.
@@ -79,7 +177,7 @@ abstract class DataStore {
 
 		// if not there, look on disk
 		if (playerData == null) {
-			playerData = this.loadPlayerDataFromStorageIfExist(uuid);
+			playerData = this.getLoadResult(uuid, this.loadStoredPlayerData(uuid, false), true);
 		}
 
 		return playerData;
@@ -113,8 +211,9 @@ abstract class DataStore {
 	// implementation varies based on flat file or database storage
 	abstract boolean isPlayerDataExisting(UUID uuid);
 
+	// creates the data of a player who has no stored data: default data, or imported old player data
 	// implementation varies depending on flat file or database storage
-	abstract PlayerData loadOrCreatePlayerDataFromStorage(Player player);
+	abstract PlayerData createPlayerData(Player player);
 
 	// loading PlayerData by a given uuid and returns null, if there is no data stored for a player with this uuid
 	// implementation varies depending on flat file or database storage
@@ -138,16 +237,18 @@ abstract class DataStore {
 	// loads user-facing messages from the messages.yml configuration file into memory
 	private void loadMessages() {
 		Messages[] messageIDs = Messages.values();
-		messages = new String[Messages.values().length];
+		messages = new MessageTemplate[Messages.values().length];
 
 		Map<String, CustomizableMessage> defaults = new HashMap<String, CustomizableMessage>();
 
 		// initialize defaults
 		this.addDefault(defaults, Messages.CantBreakYet,
 						"&eWow, you're good at mining!  You have to wait about {0} minutes to break this block.  Consider taking a break from mining to do something else, like building or exploring.  This mining speed limit keeps our ores safe from cheaters.  :)\\n&eClick here for a brief explanation:\\n&e http://bit.ly/1yG91ge",
-						"0: minutes until the block can be broken  1: how often the player has already reached his limit (unused by default)");
+						"0: minutes until the block can be broken  1: how often the player has already reached his limit (unused by default)  2: how many block breaks were denied since the last message (unused by default)");
 		this.addDefault(defaults, Messages.AdminNotification, "&e{0} reached the mining speed limit. He already reached it about {1} times.",
 						"0: player name  1: how often the player has already reached his limit");
+		this.addDefault(defaults, Messages.AdminNotificationDigest, "&e{0} player(s) reached the mining speed limit: {1}",
+						"0: number of players  1: the players, with how often they have already reached their limit");
 		this.addDefault(defaults, Messages.NoPermission, "&cYou have no permission for that.", null);
 		this.addDefault(defaults, Messages.OnlyAsPlayer, "&cThis command can only be executed as a player.", null);
 		this.addDefault(defaults, Messages.CommandHelpHeader, "&2----- &4AntiXRay Commands &2-----", null);
@@ -183,8 +284,8 @@ abstract class DataStore {
 			String message = config.getString("Messages." + messageID.name() + ".Text", messageData.text);
 			config.set("Messages." + messageID.name() + ".Text", message);
 
-			// colorize and store message
-			messages[messageID.ordinal()] = ChatColor.translateAlternateColorCodes('&', message);
+			// colorize, compile and store message
+			messages[messageID.ordinal()] = new MessageTemplate(ChatColor.translateAlternateColorCodes('&', message));
 
 			if (messageData.notes != null) {
 				messageData.notes = config.getString("Messages." + messageID.name() + ".Notes", messageData.notes);
@@ -211,15 +312,17 @@ abstract class DataStore {
 
 	// gets a message from memory
 	public String getMessage(Messages messageID, String... args) {
-		String message = messages[messageID.ordinal()];
-
-		for (int i = 0; i < args.length; i++) {
-			String param = args[i];
-			message = message.replace("{" + i + "}", param);
-		}
+		return messages[messageID.ordinal()].format(args);
+	}
 
-		return message;
+	// gets the precompiled template of a message from memory
+	MessageTemplate getMessageTemplate(Messages messageID) {
+		return messages[messageID.ordinal()];
+	}
 
+	// saves the given player data, unless it didn't change since it was last loaded or saved
+	void savePlayerDataIfDirty(UUID uuid, PlayerData playerData) {
+		if (playerData.isDirty()) this.savePlayerData(uuid, playerData);
 	}
 
 	// closes any open connections. implementation varies depending on flat file or database storage.
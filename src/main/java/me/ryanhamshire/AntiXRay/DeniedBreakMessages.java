@@ -0,0 +1,106 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+// informs players that they can't break a block yet, but at most once per cooldown: breaking many blocks at once (for
+// example via vein miner plugins) doesn't flood them with messages
+// the first denied block break sends the message right away and opens a cooldown window, the block breaks denied during
+// that window get reported together in one message once the window ends
+// a single shared task sends those pending messages, and only runs while there are any
+class DeniedBreakMessages implements Runnable {
+
+	private static class PendingMessage {
+
+		private final PlayerData playerData;
+		// the estimate of the most recently denied block break
+		private int minutesUntilBreak;
+
+		private PendingMessage(PlayerData playerData) {
+			this.playerData = playerData;
+		}
+	}
+
+	private final Map<Player, PendingMessage> pendingMessages = new LinkedHashMap<Player, PendingMessage>();
+	private BukkitTask task = null;
+
+	DeniedBreakMessages() {
+	}
+
+	void onBreakDenied(Player player, PlayerData playerData, int minutesUntilBreak) {
+		playerData.deniedBreaksSinceMessage++;
+		long now = System.currentTimeMillis();
+		if (now - playerData.lastDeniedBreakMessageTime >= AntiXRay.instance.config_deniedBreakMessageCooldown) {
+			// no recent message: inform him right away (including any denials of the previous window which weren't
+			// reported yet), this opens a new window
+			pendingMessages.remove(player);
+			this.sendMessage(player, playerData, minutesUntilBreak, now);
+		} else {
+			// report it together with the other denials of this window, once it ends
+			PendingMessage pendingMessage = pendingMessages.get(player);
+			if (pendingMessage == null) {
+				pendingMessage = new PendingMessage(playerData);
+				pendingMessages.put(player, pendingMessage);
+				if (task == null) task = Bukkit.getScheduler().runTaskTimer(AntiXRay.instance, this, 1L, 1L);
+			}
+			pendingMessage.minutesUntilBreak = minutesUntilBreak;
+		}
+	}
+
+	private void sendMessage(Player player, PlayerData playerData, int minutesUntilBreak, long now) {
+		AntiXRay.sendMessage(player, Messages.CantBreakYet, String.valueOf(minutesUntilBreak), String.valueOf(playerData.reachedLimitCount),
+				String.valueOf(playerData.deniedBreaksSinceMessage));
+		playerData.lastDeniedBreakMessageTime = now;
+		playerData.deniedBreaksSinceMessage = 0;
+	}
+
+	// drops the pending message of a player who left
+	void removePlayer(Player player) {
+		pendingMessages.remove(player);
+	}
+
+	@Override
+	public void run() {
+		// send the messages of the windows which ended:
+		long now = System.currentTimeMillis();
+		long cooldown = AntiXRay.instance.config_deniedBreakMessageCooldown;
+		Iterator<Map.Entry<Player, PendingMessage>> iterator = pendingMessages.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Player, PendingMessage> entry = iterator.next();
+			PendingMessage pendingMessage = entry.getValue();
+			if (now - pendingMessage.playerData.lastDeniedBreakMessageTime >= cooldown) {
+				iterator.remove();
+				this.sendMessage(entry.getKey(), pendingMessage.playerData, pendingMessage.minutesUntilBreak, now);
+			}
+		}
+
+		// stop until there are pending messages again
+		if (pendingMessages.isEmpty()) {
+			task.cancel();
+			task = null;
+		}
+	}
+}
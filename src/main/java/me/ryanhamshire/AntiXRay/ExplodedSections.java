@@ -0,0 +1,127 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Arrays;
+
+// Counts the exploded blocks per chunk section, so that only those sections get scanned for protected blocks which
+// contain enough of the exploded blocks to make reading the whole section worth it.
+// The sections are kept in the order they were first added. Reused for all explosions, so that large explosions don't
+// need to allocate.
+class ExplodedSections {
+
+	// whether the blocks of a section need to be checked individually
+	static final byte UNDECIDED = 0;
+	static final byte SKIP = 1;
+	static final byte CHECK = 2;
+
+	private static final int MIN_CAPACITY = 16;
+
+	// the sections, by index
+	private long[] keys = new long[MIN_CAPACITY];
+	private int[] counts = new int[MIN_CAPACITY];
+	private byte[] states = new byte[MIN_CAPACITY];
+	private int size = 0;
+
+	// open addressing table of section indices + 1 (0 marks empty entries)
+	private int[] table = new int[MIN_CAPACITY * 2];
+
+	ExplodedSections() {
+	}
+
+	private static int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		if (size == 0) return;
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	// counts a block of the given section, returns the index of the section
+	int add(long sectionKey) {
+		int mask = table.length - 1;
+		int tableIndex = hash(sectionKey) & mask;
+		for (;; tableIndex = (tableIndex + 1) & mask) {
+			int entry = table[tableIndex];
+			if (entry == 0) break;
+			int index = entry - 1;
+			if (keys[index] == sectionKey) {
+				counts[index]++;
+				return index;
+			}
+		}
+
+		// new section:
+		int index = size;
+		if (index == keys.length) {
+			int capacity = index * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			states = Arrays.copyOf(states, capacity);
+		}
+		keys[index] = sectionKey;
+		counts[index] = 1;
+		states[index] = UNDECIDED;
+		size++;
+
+		// keep the load factor at most 0.5:
+		if (size * 2 > table.length) {
+			this.rehash(table.length * 2);
+		} else {
+			table[tableIndex] = index + 1;
+		}
+		return index;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		int mask = capacity - 1;
+		for (int index = 0; index < size; index++) {
+			int tableIndex = hash(keys[index]) & mask;
+			while (table[tableIndex] != 0) {
+				tableIndex = (tableIndex + 1) & mask;
+			}
+			table[tableIndex] = index + 1;
+		}
+	}
+
+	long getKey(int index) {
+		return keys[index];
+	}
+
+	// the number of exploded blocks in the section
+	int getCount(int index) {
+		return counts[index];
+	}
+
+	byte getState(int index) {
+		return states[index];
+	}
+
+	void setState(int index, byte state) {
+		states[index] = state;
+	}
+}
@@ -20,13 +20,22 @@ package me.ryanhamshire.AntiXRay;
 
 import java.util.List;
 
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 /**
  * Protects protected blocks from being destroyed/broken by explosions.
@@ -34,6 +43,14 @@ import org.bukkit.event.entity.EntityExplodeEvent;
  */
 class ExplosionsListener implements Listener {
 
+	// explosions with at least this many blocks skip the blocks of chunk sections without protected blocks
+	private static final int SECTION_PREFILTER_MIN_BLOCKS = 256;
+
+	private final ProtectedSectionsCache sectionsCache = new ProtectedSectionsCache();
+	// reused for all explosions: the exploded sections, and the index of the section of each exploded block
+	private final ExplodedSections explodedSections = new ExplodedSections();
+	private int[] blockSections = new int[0];
+
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
 	void onEntityExplode(EntityExplodeEvent event) {
 		Location location = event.getLocation();
@@ -52,22 +69,100 @@ class ExplosionsListener implements Listener {
 		assert location != null && blocks != null;
 
 		// get block protections for this world
-		List<ProtectedBlock> protections = AntiXRay.getProtections().getProtections(location.getWorld().getName());
+		World world = location.getWorld();
+		WorldProtections protections = AntiXRay.getProtections().getProtections(world);
 
 		// don't do anything when the explosion world isn't one of the controlled worlds
 		if (protections == null || protections.isEmpty()) return;
 
-		// for each block that will be broken by the explosion
-		for (int i = 0; i < blocks.size(); i++) {
+		this.removeProtectedBlocks(world, protections, blocks);
+	}
+
+	// removes the blocks which are protected by the given protections from the given exploded blocks
+	void removeProtectedBlocks(World world, WorldProtections protections, List<Block> blocks) {
+		int size = blocks.size();
+
+		// for large explosions: skip the blocks of chunk sections without any protected blocks
+		boolean usePrefilter = (size >= SECTION_PREFILTER_MIN_BLOCKS);
+		if (usePrefilter) {
+			// count the exploded blocks per section, remembering the section of each block:
+			if (blockSections.length < size) blockSections = new int[size];
+			explodedSections.clear();
+			for (int i = 0; i < size; i++) {
+				Block block = blocks.get(i);
+				long sectionKey = BlockPositions.packSection(block.getX() >> 4, block.getY() >> 4, block.getZ() >> 4);
+				blockSections[i] = explodedSections.add(sectionKey);
+			}
+			sectionsCache.checkSections(world, protections, explodedSections, System.currentTimeMillis());
+		}
+
+		// filter the blocks in a single pass, compacting the list of blocks which are not protected in place:
+		int keptCount = 0;
+		for (int i = 0; i < size; i++) {
 			Block block = blocks.get(i);
-			int height = block.getLocation().getBlockY();
-			// look for that block's type in the list of protected blocks
-			for (ProtectedBlock protetcedBlock : protections) {
-				// if its type is in our protected blocks list, remove the block from the explosion list (so it doesn't break)
-				if (protetcedBlock.isOfSameType(block) && height <= protetcedBlock.getMaxHeight() && protetcedBlock.getValue() > 0) {
-					blocks.remove(i--);
+			if (!usePrefilter || explodedSections.getState(blockSections[i]) != ExplodedSections.SKIP) {
+				Material blockType = block.getType();
+				int height = block.getY();
+				// if its type is protected, don't keep the block in the explosion list (so it doesn't break)
+				if (protections.mightBeProtected(blockType, height) && protections.getProtection(blockType).getValue(height) > 0) {
+					continue;
 				}
 			}
+			if (keptCount != i) blocks.set(keptCount, block);
+			keptCount++;
+		}
+		// remove the remaining tail:
+		if (keptCount != size) {
+			blocks.subList(keptCount, size).clear();
 		}
 	}
+
+	// keep the sections cache up-to-date:
+
+	// clears the sections cache, for example because the protections changed
+	void clearSectionsCache() {
+		sectionsCache.clear();
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onBlockPlace(BlockPlaceEvent event) {
+		Block block = event.getBlockPlaced();
+		sectionsCache.invalidate(block.getWorld(), block.getX(), block.getY(), block.getZ());
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPistonExtend(BlockPistonExtendEvent event) {
+		this.invalidateMovedBlocks(event.getBlocks(), event.getDirection());
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPistonRetract(BlockPistonRetractEvent event) {
+		this.invalidateMovedBlocks(event.getBlocks(), event.getDirection());
+	}
+
+	// invalidates the sections the given blocks might get moved into (in either direction)
+	private void invalidateMovedBlocks(List<Block> blocks, BlockFace direction) {
+		int modX = direction.getModX();
+		int modY = direction.getModY();
+		int modZ = direction.getModZ();
+		for (Block block : blocks) {
+			World world = block.getWorld();
+			int x = block.getX();
+			int y = block.getY();
+			int z = block.getZ();
+			sectionsCache.invalidate(world, x + modX, y + modY, z + modZ);
+			sectionsCache.invalidate(world, x - modX, y - modY, z - modZ);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onChunkUnload(ChunkUnloadEvent event) {
+		Chunk chunk = event.getChunk();
+		sectionsCache.removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onWorldUnload(WorldUnloadEvent event) {
+		sectionsCache.removeWorld(event.getWorld());
+	}
 }
@@ -29,6 +29,9 @@ class FlatFileDataStore extends DataStore {
 	final static String playerDataFolderPath = dataLayerFolderPath + File.separator + "PlayerData";
 	final static String convertedPlayerDataFolderPath = dataLayerFolderPath + File.separator + "PlayerDataConverted";
 
+	// writes the player data files in the background
+	private final PlayerDataWriter writer = new PlayerDataWriter();
+
 	FlatFileDataStore() {
 		this.initialize();
 	}
@@ -49,23 +52,18 @@ class FlatFileDataStore extends DataStore {
 	@Override
 	boolean isPlayerDataExisting(UUID uuid) {
 		File playerFile = this.getPlayerFile(uuid);
-		// whether or not the file exists
-		return playerFile.exists();
+		// whether or not the file exists (or is about to be written)
+		return writer.getPendingWrite(playerFile) != null || playerFile.exists();
 	}
 
 	@Override
-	PlayerData loadOrCreatePlayerDataFromStorage(Player player) {
-		UUID uuid = player.getUniqueId();
-		PlayerData playerData = this.loadPlayerDataFromStorageIfExist(uuid);
-
-		// if it doesn't exist, set default points
-		if (playerData == null) {
-			playerData = this.getDefaultPlayerData(player);
+	PlayerData createPlayerData(Player player) {
+		// set default points
+		PlayerData playerData = this.getDefaultPlayerData(player);
 
-			// check if we have some old player data for this player (from pre MC 1.8):
-			String playerName = player.getName();
-			this.loadOldPlayerData(playerName, playerData);
-		}
+		// check if we have some old player data for this player (from pre MC 1.8):
+		String playerName = player.getName();
+		this.loadOldPlayerData(playerName, playerData);
 
 		return playerData;
 	}
@@ -80,6 +78,10 @@ class FlatFileDataStore extends DataStore {
 	@Override
 	void savePlayerData(UUID uuid, PlayerData playerData) {
 		this.savePlayerData(playerData, this.getPlayerFile(uuid));
+		// data prefetched for a login (for example while the player was still online with another session) is outdated
+		// now: only discarded after the write got queued, since a prefetch started in between would otherwise read the
+		// outdated file
+		this.discardPrefetchedPlayerData(uuid);
 	}
 
 	// methods to handle old playerdata (from pre MC 1.8):
@@ -91,7 +93,7 @@ class FlatFileDataStore extends DataStore {
 	@Override
 	boolean isOldPlayerDataExisting(String playerName) {
 		File oldPlayerFile = this.getOldPlayerFile(playerName);
-		return oldPlayerFile.isFile(); // this also checks if the file exists
+		return writer.getPendingWrite(oldPlayerFile) != null || oldPlayerFile.isFile(); // this also checks if the file exists
 	}
 
 	@Override
@@ -118,6 +120,8 @@ class FlatFileDataStore extends DataStore {
 			importInto.reachedLimitCount = oldPlayerData.reachedLimitCount;
 
 			// move the old player file into separate folder so we know it has been converted:
+			// it must not get written again afterwards
+			writer.cancel(oldPlayerFile);
 			File convertedFile = new File(convertedPlayerDataFolderPath + File.separator + playerName);
 			if (!oldPlayerFile.renameTo(convertedFile)) {
 				// moving failed for some reason.. let's print a warning and then remove the file:
@@ -135,6 +139,16 @@ class FlatFileDataStore extends DataStore {
 	// shared methods to load and save playerdata from and to file:
 
 	private PlayerData loadPlayerDataFromFile(File playerFile) {
+		// if the file is about to be written, the pending data is the most recent
+		PlayerDataWriter.PendingWrite pendingWrite = writer.getPendingWrite(playerFile);
+		if (pendingWrite != null) {
+			PlayerData playerData = new PlayerData();
+			playerData.points = pendingWrite.points;
+			playerData.reachedLimitCount = pendingWrite.reachedLimitCount;
+			playerData.markStored();
+			return playerData;
+		}
+
 		// if it doesn't exist as a file
 		if (!playerFile.exists()) {
 			return null;
@@ -155,6 +169,7 @@ class FlatFileDataStore extends DataStore {
 			playerData.points = Integer.parseInt(pointsString);
 			// if the file is in the old format and doesn't contain the information, the playerData will automatically initialized with 0
 			if (reachedLimitCountString != null) playerData.reachedLimitCount = Integer.parseInt(reachedLimitCountString);
+			playerData.markStored();
 
 			inStream.close();
 		} catch (Exception e) {
@@ -171,35 +186,13 @@ class FlatFileDataStore extends DataStore {
 	}
 
 	private void savePlayerData(PlayerData playerData, File playerFile) {
-		BufferedWriter outStream = null;
-		try {
-			// open the player's file
-			playerFile.createNewFile();
-			outStream = new BufferedWriter(new FileWriter(playerFile));
-
-			// first line is available points
-			outStream.write(String.valueOf(playerData.points));
-			outStream.newLine();
-
-			// second line is, how often the player has already reached his limit
-			outStream.write(String.valueOf(playerData.reachedLimitCount));
-			outStream.newLine();
-		} catch (Exception e) {
-			// if any problem, log it
-			AntiXRay.logger.severe("Unexpected exception saving player data to \"" + playerFile.getPath() + "\": " + e.getMessage());
-		}
-
-		try {
-			// close the file
-			if (outStream != null) {
-				outStream.close();
-			}
-		} catch (IOException exception) {
-		}
+		writer.save(playerFile, playerData);
+		playerData.markStored();
 	}
 
 	@Override
 	void close() {
-		// nothing to do here because files are not left open after reading or writing
+		// files are not left open after reading or writing, but there might still be player data waiting to be written
+		writer.close();
 	}
 }
@@ -0,0 +1,134 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Arrays;
+
+// A minimal open addressing hash set of primitive ints, avoiding the memory overhead of boxed Integers.
+// Integer.MIN_VALUE is reserved and can't be stored.
+class IntHashSet {
+
+	private static final int EMPTY = Integer.MIN_VALUE;
+	private static final int MIN_CAPACITY = 8;
+
+	private int[] table;
+	private int size = 0;
+
+	IntHashSet() {
+		this.table = newTable(MIN_CAPACITY);
+	}
+
+	private static int[] newTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	private static int hash(int value) {
+		int hash = value * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean contains(int value) {
+		int mask = table.length - 1;
+		for (int index = hash(value) & mask;; index = (index + 1) & mask) {
+			int entry = table[index];
+			if (entry == EMPTY) return false;
+			if (entry == value) return true;
+		}
+	}
+
+	// returns false if the value was already contained
+	boolean add(int value) {
+		assert value != EMPTY;
+		// keep the load factor at most 0.5:
+		if ((size + 1) * 2 > table.length) this.resize(table.length * 2);
+
+		int mask = table.length - 1;
+		for (int index = hash(value) & mask;; index = (index + 1) & mask) {
+			int entry = table[index];
+			if (entry == value) return false;
+			if (entry == EMPTY) {
+				table[index] = value;
+				size++;
+				return true;
+			}
+		}
+	}
+
+	// returns false if the value was not contained
+	boolean remove(int value) {
+		int mask = table.length - 1;
+		int index = hash(value) & mask;
+		while (true) {
+			int entry = table[index];
+			if (entry == EMPTY) return false;
+			if (entry == value) break;
+			index = (index + 1) & mask;
+		}
+
+		// shift back following entries of the same probe sequence, so that no tombstones are needed:
+		int gap = index;
+		for (index = (index + 1) & mask;; index = (index + 1) & mask) {
+			int entry = table[index];
+			if (entry == EMPTY) break;
+			int home = hash(entry) & mask;
+			// move the entry into the gap, if its home position is not between the gap and its current position:
+			if (((index - home) & mask) >= ((index - gap) & mask)) {
+				table[gap] = entry;
+				gap = index;
+			}
+		}
+		table[gap] = EMPTY;
+		size--;
+		return true;
+	}
+
+	private void resize(int capacity) {
+		int[] oldTable = table;
+		table = newTable(capacity);
+		int mask = capacity - 1;
+		for (int entry : oldTable) {
+			if (entry == EMPTY) continue;
+			int index = hash(entry) & mask;
+			while (table[index] != EMPTY) {
+				index = (index + 1) & mask;
+			}
+			table[index] = entry;
+		}
+	}
+
+	// copies the contained values into a new array
+	int[] toArray() {
+		int[] values = new int[size];
+		int i = 0;
+		for (int entry : table) {
+			if (entry != EMPTY) values[i++] = entry;
+		}
+		return values;
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import org.bukkit.entity.Player;
+
+// FEATURE: notify moderators about players reaching their mining limit in regular summaries, instead of immediately
+
+// collects players reaching their mining limit in a bounded buffer, and regularly flushes one summary to the log and to
+// the online moderators
+class LimitReachedDigest implements Runnable {
+
+	// the maximum number of players which are listed in one summary
+	static final int CAPACITY = 50;
+
+	private final String[] playerNames = new String[CAPACITY];
+	private final int[] reachedLimitCounts = new int[CAPACITY];
+	private final String[] locations = new String[CAPACITY];
+	private int size = 0;
+	// the number of players which didn't fit into the buffer anymore
+	private int overflow = 0;
+
+	LimitReachedDigest() {
+	}
+
+	void add(String playerName, int reachedLimitCount, String location) {
+		if (size == CAPACITY) {
+			overflow++;
+			return;
+		}
+		playerNames[size] = playerName;
+		reachedLimitCounts[size] = reachedLimitCount;
+		locations[size] = location;
+		size++;
+	}
+
+	@Override
+	public void run() {
+		if (size == 0) return;
+
+		int total = size + overflow;
+		StringBuilder logEntry = new StringBuilder();
+		StringBuilder players = new StringBuilder();
+		logEntry.append(total).append(" player(s) reached the mining speed limit: ");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				logEntry.append(", ");
+				players.append(", ");
+			}
+			logEntry.append(playerNames[i]).append(" at ").append(locations[i]).append(" (").append(reachedLimitCounts[i]).append(" times)");
+			players.append(playerNames[i]).append(" (").append(reachedLimitCounts[i]).append(')');
+
+			// free references:
+			playerNames[i] = null;
+			locations[i] = null;
+		}
+		if (overflow > 0) {
+			logEntry.append(" and ").append(overflow).append(" more");
+			players.append(" and ").append(overflow).append(" more");
+		}
+		size = 0;
+		overflow = 0;
+
+		// make log entry
+		AntiXRay.logger.info(logEntry.toString());
+
+		// notify online moderators
+		String totalString = String.valueOf(total);
+		String playersString = players.toString();
+		for (Player moderator : AntiXRay.instance.moderators.getOnlineModerators()) {
+			AntiXRay.sendMessage(moderator, Messages.AdminNotificationDigest, totalString, playersString);
+		}
+	}
+}
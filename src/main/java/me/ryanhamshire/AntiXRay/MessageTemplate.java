@@ -0,0 +1,168 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+// A precompiled message: split into lines, and each line split into literal segments and argument slots ('{0}', '{1}',
+// ..), so that rendering it requires no regex or string replacements.
+class MessageTemplate {
+
+	// reused for rendering the lines of messages
+	private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	// for each line: the literal segments around the argument slots, and the argument indices of the slots in between
+	private final String[][] lineLiterals;
+	private final int[][] lineArguments;
+
+	MessageTemplate(String message) {
+		List<String> lines = splitLines(message);
+		int lineCount = lines.size();
+		this.lineLiterals = new String[lineCount][];
+		this.lineArguments = new int[lineCount][];
+
+		List<String> literals = new ArrayList<String>();
+		List<Integer> arguments = new ArrayList<Integer>();
+		for (int lineIndex = 0; lineIndex < lineCount; lineIndex++) {
+			String line = lines.get(lineIndex);
+			literals.clear();
+			arguments.clear();
+
+			int literalStart = 0;
+			int openIndex;
+			while ((openIndex = line.indexOf('{', literalStart)) != -1) {
+				int closeIndex = line.indexOf('}', openIndex);
+				if (closeIndex == -1) break;
+				int argument = parseArgumentIndex(line, openIndex + 1, closeIndex);
+				if (argument == -1) {
+					// not an argument slot, keep it as part of the literal:
+					literalStart = openIndex + 1;
+					continue;
+				}
+				literals.add(line.substring(0, openIndex));
+				arguments.add(argument);
+				line = line.substring(closeIndex + 1);
+				literalStart = 0;
+			}
+			literals.add(line);
+
+			lineLiterals[lineIndex] = literals.toArray(new String[literals.size()]);
+			int[] lineArgs = new int[arguments.size()];
+			for (int i = 0; i < lineArgs.length; i++) {
+				lineArgs[i] = arguments.get(i);
+			}
+			lineArguments[lineIndex] = lineArgs;
+		}
+	}
+
+	// splits on 'real' new lines and on the escaped new line character sequence,
+	// dropping trailing empty lines (like String#split)
+	private static List<String> splitLines(String message) {
+		List<String> lines = new ArrayList<String>();
+		int lineStart = 0;
+		int length = message.length();
+		for (int i = 0; i < length; i++) {
+			char c = message.charAt(i);
+			if (c == '\n') {
+				lines.add(message.substring(lineStart, i));
+				lineStart = i + 1;
+			} else if (c == '\\' && i + 1 < length && message.charAt(i + 1) == 'n') {
+				lines.add(message.substring(lineStart, i));
+				lineStart = i + 2;
+				i++;
+			}
+		}
+		if (lineStart == 0) {
+			// no line breaks:
+			lines.add(message);
+			return lines;
+		}
+		lines.add(message.substring(lineStart));
+		while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+			lines.remove(lines.size() - 1);
+		}
+		return lines;
+	}
+
+	// returns -1 if the given range doesn't contain an argument index
+	private static int parseArgumentIndex(String line, int start, int end) {
+		if (start == end || end - start > 2) return -1;
+		int index = 0;
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			index = index * 10 + (c - '0');
+		}
+		return index;
+	}
+
+	private String renderLine(int lineIndex, String[] args) {
+		String[] literals = lineLiterals[lineIndex];
+		int[] arguments = lineArguments[lineIndex];
+		// fast path for lines without arguments:
+		if (arguments.length == 0) return literals[0];
+
+		StringBuilder builder = BUILDER.get();
+		builder.setLength(0);
+		for (int i = 0; i < arguments.length; i++) {
+			builder.append(literals[i]);
+			int argument = arguments[i];
+			if (argument < args.length) {
+				builder.append(args[argument]);
+			} else {
+				// keep slots for which there is no argument:
+				builder.append('{').append(argument).append('}');
+			}
+		}
+		builder.append(literals[arguments.length]);
+		return builder.toString();
+	}
+
+	// renders the message with the given arguments, with lines separated by new line characters
+	String format(String... args) {
+		if (lineLiterals.length == 1) return this.renderLine(0, args);
+
+		StringBuilder message = new StringBuilder();
+		for (int lineIndex = 0; lineIndex < lineLiterals.length; lineIndex++) {
+			if (lineIndex > 0) message.append('\n');
+			message.append(this.renderLine(lineIndex, args));
+		}
+		return message.toString();
+	}
+
+	// sends the message line by line to the given receiver, or logs it if the receiver is null
+	void send(CommandSender receiver, String... args) {
+		for (int lineIndex = 0; lineIndex < lineLiterals.length; lineIndex++) {
+			String line = this.renderLine(lineIndex, args);
+			if (receiver == null) {
+				AntiXRay.logger.info(line);
+			} else {
+				receiver.sendMessage(line);
+			}
+		}
+	}
+}
@@ -22,6 +22,7 @@ public enum Messages {
 
 	CantBreakYet,
 	AdminNotification,
+	AdminNotificationDigest,
 	NoPermission,
 	OnlyAsPlayer,
 	CommandHelpHeader,
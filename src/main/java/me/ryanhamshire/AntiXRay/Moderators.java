@@ -0,0 +1,54 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bukkit.entity.Player;
+
+// keeps track of the online players who get notified about players reaching their mining limit, so that notifying them
+// doesn't require checking the permission of every online player
+class Moderators {
+
+	private final Set<Player> onlineModerators = new HashSet<Player>();
+	private final Collection<Player> onlineModeratorsView = Collections.unmodifiableSet(onlineModerators);
+
+	Moderators() {
+	}
+
+	// adds or removes the given online player, depending on his current permissions
+	void update(Player player) {
+		if (player.hasPermission("antixray.monitorxrayers")) {
+			onlineModerators.add(player);
+		} else {
+			onlineModerators.remove(player);
+		}
+	}
+
+	void remove(Player player) {
+		onlineModerators.remove(player);
+	}
+
+	Collection<Player> getOnlineModerators() {
+		return onlineModeratorsView;
+	}
+}
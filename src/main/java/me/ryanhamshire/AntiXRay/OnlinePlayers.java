@@ -0,0 +1,246 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.bukkit.entity.Player;
+
+// A ledger of the online players: each play session gets a dense slot, and the frequently updated per session state
+// lives in parallel primitive arrays indexed by that slot, so that passes over all online players run as tight loops
+// over arrays. Slots are looked up via an open addressing index keyed by the two longs of the player's uuid.
+// When a player leaves, the last slot is moved into his slot, so slots of players can change on removal.
+// The slots of the players who get checked for being afk on the same tick are linked into a list, so that the afk
+// check only visits the players of the current tick.
+// Only used from the main thread.
+class OnlinePlayers {
+
+	static final int NO_SLOT = -1;
+	private static final int MIN_CAPACITY = 16;
+
+	// the number of used slots, slots 0 to size - 1 are used
+	private int size = 0;
+
+	// per slot:
+	private long[] uuidMostBits;
+	private long[] uuidLeastBits;
+	private Player[] players;
+	private PlayerData[] playerData;
+	// the tick (within the afk check interval) the player gets checked for being afk on
+	private int[] afkCheckTicks;
+	// the next slot in the list of the player's afk check tick, or NO_SLOT
+	private int[] nextAfkCheckSlots;
+	// the activity of the player since his last afk check (see AfkCheckTask)
+	float[] movedDistances;
+	int[] lookChanges;
+	boolean[] activeSinceAfkCheck;
+	// the time in minutes the player is already considered being afk in a row
+	int[] afkMinutes;
+
+	// afk check tick -> first slot in the list of the players checked on that tick, or NO_SLOT
+	private final int[] afkCheckTickHeads = new int[AfkCheckTask.CHECK_INTERVAL_TICKS];
+
+	// index: uuid -> slot
+	private long[] indexMostBits;
+	private long[] indexLeastBits;
+	private int[] indexSlots;
+
+	OnlinePlayers() {
+		Arrays.fill(afkCheckTickHeads, NO_SLOT);
+		this.resizeSlots(MIN_CAPACITY);
+		this.resizeIndex(MIN_CAPACITY * 2);
+	}
+
+	private static int hash(long mostBits, long leastBits) {
+		long hash = (mostBits ^ leastBits) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	int size() {
+		return size;
+	}
+
+	Player getPlayer(int slot) {
+		return players[slot];
+	}
+
+	PlayerData getPlayerData(int slot) {
+		return playerData[slot];
+	}
+
+	// the first slot of the players who get checked for being afk on the given tick, or NO_SLOT
+	int getFirstAfkCheckSlot(int tick) {
+		return afkCheckTickHeads[tick];
+	}
+
+	// the next slot of the players who get checked for being afk on the same tick, or NO_SLOT
+	int getNextAfkCheckSlot(int slot) {
+		return nextAfkCheckSlots[slot];
+	}
+
+	// returns NO_SLOT if the player isn't in the ledger
+	int getSlot(UUID uuid) {
+		int indexPosition = this.findIndexPosition(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		return indexPosition == -1 ? NO_SLOT : indexSlots[indexPosition];
+	}
+
+	private int findIndexPosition(long mostBits, long leastBits) {
+		int mask = indexSlots.length - 1;
+		for (int index = hash(mostBits, leastBits) & mask;; index = (index + 1) & mask) {
+			int slot = indexSlots[index];
+			if (slot == NO_SLOT) return -1;
+			if (indexMostBits[index] == mostBits && indexLeastBits[index] == leastBits) return index;
+		}
+	}
+
+	// adds the player with fresh session state, or updates the player and his data if he is already in the ledger
+	int add(Player player, PlayerData data) {
+		UUID uuid = player.getUniqueId();
+		long mostBits = uuid.getMostSignificantBits();
+		long leastBits = uuid.getLeastSignificantBits();
+		int slot = this.getSlot(uuid);
+		if (slot == NO_SLOT) {
+			if (size == players.length) this.resizeSlots(size * 2);
+			// keep the load factor of the index at most 0.5:
+			if ((size + 1) * 2 > indexSlots.length) this.resizeIndex(indexSlots.length * 2);
+
+			slot = size++;
+			uuidMostBits[slot] = mostBits;
+			uuidLeastBits[slot] = leastBits;
+			int afkCheckTick = Math.floorMod(uuid.hashCode(), AfkCheckTask.CHECK_INTERVAL_TICKS);
+			afkCheckTicks[slot] = afkCheckTick;
+			nextAfkCheckSlots[slot] = afkCheckTickHeads[afkCheckTick];
+			afkCheckTickHeads[afkCheckTick] = slot;
+			movedDistances[slot] = 0.0F;
+			lookChanges[slot] = 0;
+			activeSinceAfkCheck[slot] = false;
+			afkMinutes[slot] = 0;
+			this.insertIntoIndex(mostBits, leastBits, slot);
+		}
+		players[slot] = player;
+		playerData[slot] = data;
+		return slot;
+	}
+
+	void remove(UUID uuid) {
+		int indexPosition = this.findIndexPosition(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		if (indexPosition == -1) return;
+		int slot = indexSlots[indexPosition];
+		this.removeFromIndex(indexPosition);
+		this.replaceAfkCheckLink(afkCheckTicks[slot], slot, nextAfkCheckSlots[slot]);
+
+		// move the last slot into the freed slot, to keep the slots dense:
+		int lastSlot = --size;
+		if (slot != lastSlot) {
+			uuidMostBits[slot] = uuidMostBits[lastSlot];
+			uuidLeastBits[slot] = uuidLeastBits[lastSlot];
+			players[slot] = players[lastSlot];
+			playerData[slot] = playerData[lastSlot];
+			afkCheckTicks[slot] = afkCheckTicks[lastSlot];
+			nextAfkCheckSlots[slot] = nextAfkCheckSlots[lastSlot];
+			this.replaceAfkCheckLink(afkCheckTicks[slot], lastSlot, slot);
+			movedDistances[slot] = movedDistances[lastSlot];
+			lookChanges[slot] = lookChanges[lastSlot];
+			activeSinceAfkCheck[slot] = activeSinceAfkCheck[lastSlot];
+			afkMinutes[slot] = afkMinutes[lastSlot];
+			indexSlots[this.findIndexPosition(uuidMostBits[slot], uuidLeastBits[slot])] = slot;
+		}
+		// don't keep references to players who left:
+		players[lastSlot] = null;
+		playerData[lastSlot] = null;
+	}
+
+	// replaces the link to the given slot in the list of the given afk check tick
+	private void replaceAfkCheckLink(int tick, int slot, int replacement) {
+		if (afkCheckTickHeads[tick] == slot) {
+			afkCheckTickHeads[tick] = replacement;
+			return;
+		}
+		int previous = afkCheckTickHeads[tick];
+		while (nextAfkCheckSlots[previous] != slot) {
+			previous = nextAfkCheckSlots[previous];
+		}
+		nextAfkCheckSlots[previous] = replacement;
+	}
+
+	private void insertIntoIndex(long mostBits, long leastBits, int slot) {
+		int mask = indexSlots.length - 1;
+		int index = hash(mostBits, leastBits) & mask;
+		while (indexSlots[index] != NO_SLOT) {
+			index = (index + 1) & mask;
+		}
+		indexMostBits[index] = mostBits;
+		indexLeastBits[index] = leastBits;
+		indexSlots[index] = slot;
+	}
+
+	private void removeFromIndex(int position) {
+		// shift back following entries of the same probe sequence, so that no tombstones are needed:
+		int mask = indexSlots.length - 1;
+		int gap = position;
+		for (int index = (position + 1) & mask; indexSlots[index] != NO_SLOT; index = (index + 1) & mask) {
+			int home = hash(indexMostBits[index], indexLeastBits[index]) & mask;
+			// move the entry into the gap, if its home position is not between the gap and its current position:
+			if (((index - home) & mask) >= ((index - gap) & mask)) {
+				indexMostBits[gap] = indexMostBits[index];
+				indexLeastBits[gap] = indexLeastBits[index];
+				indexSlots[gap] = indexSlots[index];
+				gap = index;
+			}
+		}
+		indexSlots[gap] = NO_SLOT;
+	}
+
+	private void resizeSlots(int capacity) {
+		if (players == null) {
+			uuidMostBits = new long[capacity];
+			uuidLeastBits = new long[capacity];
+			players = new Player[capacity];
+			playerData = new PlayerData[capacity];
+			afkCheckTicks = new int[capacity];
+			nextAfkCheckSlots = new int[capacity];
+			movedDistances = new float[capacity];
+			lookChanges = new int[capacity];
+			activeSinceAfkCheck = new boolean[capacity];
+			afkMinutes = new int[capacity];
+		} else {
+			uuidMostBits = Arrays.copyOf(uuidMostBits, capacity);
+			uuidLeastBits = Arrays.copyOf(uuidLeastBits, capacity);
+			players = Arrays.copyOf(players, capacity);
+			playerData = Arrays.copyOf(playerData, capacity);
+			afkCheckTicks = Arrays.copyOf(afkCheckTicks, capacity);
+			nextAfkCheckSlots = Arrays.copyOf(nextAfkCheckSlots, capacity);
+			movedDistances = Arrays.copyOf(movedDistances, capacity);
+			lookChanges = Arrays.copyOf(lookChanges, capacity);
+			activeSinceAfkCheck = Arrays.copyOf(activeSinceAfkCheck, capacity);
+			afkMinutes = Arrays.copyOf(afkMinutes, capacity);
+		}
+	}
+
+	private void resizeIndex(int capacity) {
+		indexMostBits = new long[capacity];
+		indexLeastBits = new long[capacity];
+		indexSlots = new int[capacity];
+		Arrays.fill(indexSlots, NO_SLOT);
+		for (int slot = 0; slot < size; slot++) {
+			this.insertIntoIndex(uuidMostBits[slot], uuidLeastBits[slot], slot);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+// reads and writes the placed blocks files of chunks on a dedicated thread, so that loading and unloading chunks doesn't
+// block the main thread with disk access
+// loads are done before writes, since the main thread might be waiting for them
+// writes of the same file which weren't written yet are coalesced to the latest state, and loads get the state of a
+// pending write instead of reading the outdated file
+class PlacedBlocksStorage implements Runnable {
+
+	static final int[] NO_POSITIONS = new int[0];
+
+	private static class Load {
+
+		private final File file;
+		private final CompletableFuture<int[]> result = new CompletableFuture<int[]>();
+
+		private Load(File file) {
+			this.file = file;
+		}
+	}
+
+	private final Object lock = new Object();
+	private final ArrayDeque<Load> pendingLoads = new ArrayDeque<Load>();
+	// the writes which weren't completed yet, in the order they were first requested <file -> positions>
+	// an entry is only removed after it got written, so that loads never read an outdated file
+	private final LinkedHashMap<File, int[]> pendingWrites = new LinkedHashMap<File, int[]>();
+	private boolean closed = false;
+
+	private final Thread thread;
+
+	PlacedBlocksStorage() {
+		thread = new Thread(this, "AntiXRay placed blocks storage");
+		thread.start();
+	}
+
+	// loads the positions stored in the given file, completed with NO_POSITIONS if there is no such file
+	CompletableFuture<int[]> load(File file) {
+		Load load = new Load(file);
+		synchronized (lock) {
+			if (!closed) {
+				pendingLoads.add(load);
+				lock.notifyAll();
+				return load.result;
+			}
+		}
+		// already closed (and therefore everything got written): load it right away
+		load.result.complete(readFile(file));
+		return load.result;
+	}
+
+	// queues the given positions to be written to the given file, no positions delete the file
+	// the given array must not be modified afterwards
+	void save(File file, int[] positions) {
+		synchronized (lock) {
+			if (!closed) {
+				pendingWrites.put(file, positions);
+				lock.notifyAll();
+				return;
+			}
+		}
+		// already closed: write it right away
+		writeFile(file, positions);
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			Load load = null;
+			int[] loadedPositions = null;
+			File file = null;
+			int[] positions = null;
+			synchronized (lock) {
+				while (pendingLoads.isEmpty() && pendingWrites.isEmpty()) {
+					if (closed) return;
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// only stop once everything got written
+					}
+				}
+				if (!pendingLoads.isEmpty()) {
+					load = pendingLoads.poll();
+					loadedPositions = pendingWrites.get(load.file);
+				} else {
+					Iterator<Entry<File, int[]>> iterator = pendingWrites.entrySet().iterator();
+					Entry<File, int[]> next = iterator.next();
+					file = next.getKey();
+					positions = next.getValue();
+				}
+			}
+
+			if (load != null) {
+				if (loadedPositions == null) loadedPositions = readFile(load.file);
+				load.result.complete(loadedPositions);
+				continue;
+			}
+
+			writeFile(file, positions);
+
+			synchronized (lock) {
+				// unless it got replaced by a newer state in the meantime:
+				if (pendingWrites.get(file) == positions) {
+					pendingWrites.remove(file);
+				}
+			}
+		}
+	}
+
+	// completes all pending loads and writes and stops the storage thread
+	void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static int[] readFile(File chunkFile) {
+		if (!chunkFile.exists()) return NO_POSITIONS;
+
+		int[] positions = NO_POSITIONS;
+		DataInputStream inStream = null;
+		try {
+			inStream = new DataInputStream(new BufferedInputStream(new FileInputStream(chunkFile)));
+			// first the number of positions, then the positions
+			int count = inStream.readInt();
+			if (count < 0 || count > PlacedBlocksTracker.MAX_BLOCKS_PER_CHUNK) throw new IOException("Invalid number of placed blocks: " + count);
+			positions = new int[count];
+			for (int i = 0; i < count; i++) {
+				positions[i] = inStream.readInt();
+			}
+		} catch (Exception e) {
+			AntiXRay.logger.severe("Unable to load placed blocks from \"" + chunkFile.getPath() + "\": " + e.getMessage());
+			positions = NO_POSITIONS;
+		}
+
+		try {
+			if (inStream != null) inStream.close();
+		} catch (IOException exception) {
+		}
+		return positions;
+	}
+
+	private static void writeFile(File chunkFile, int[] positions) {
+		// chunks without placed blocks aren't stored:
+		if (positions.length == 0) {
+			chunkFile.delete();
+			return;
+		}
+
+		DataOutputStream outStream = null;
+		try {
+			chunkFile.getParentFile().mkdirs();
+			outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(chunkFile)));
+			outStream.writeInt(positions.length);
+			for (int position : positions) {
+				outStream.writeInt(position);
+			}
+		} catch (Exception e) {
+			AntiXRay.logger.severe("Unexpected exception saving placed blocks to \"" + chunkFile.getPath() + "\": " + e.getMessage());
+		}
+
+		try {
+			if (outStream != null) outStream.close();
+		} catch (IOException exception) {
+		}
+	}
+}
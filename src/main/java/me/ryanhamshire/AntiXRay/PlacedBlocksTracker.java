@@ -0,0 +1,260 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+// FEATURE: players can break protected blocks they (or others) have placed without spending points
+
+// Keeps track of the protected blocks which were placed by players, per chunk as packed chunk-relative positions.
+// The placed blocks of a chunk get loaded in the background when the chunk gets loaded, and saved in the background and
+// dropped from memory when the chunk gets unloaded. Only chunks which contain placed protected blocks are stored at all.
+class PlacedBlocksTracker {
+
+	final static String placedBlocksFolderPath = DataStore.dataLayerFolderPath + File.separator + "PlacedBlocks";
+
+	// limits the memory and disk space used per chunk
+	static final int MAX_BLOCKS_PER_CHUNK = 4096;
+
+	private static class ChunkData {
+
+		// the pending load of the stored positions, null once they got added to the positions
+		private CompletableFuture<int[]> load;
+		private final IntHashSet positions = new IntHashSet();
+		private boolean dirty = false;
+
+		private ChunkData(CompletableFuture<int[]> load) {
+			this.load = load;
+		}
+	}
+
+	private static class WorldData {
+
+		private final File folder;
+		// the placed blocks of the currently loaded chunks <chunkKey -> data>
+		private final Map<Long, ChunkData> loadedChunks = new HashMap<Long, ChunkData>();
+
+		private WorldData(File folder) {
+			this.folder = folder;
+		}
+	}
+
+	private final Map<World, WorldData> worlds = new IdentityHashMap<World, WorldData>();
+	private final PlacedBlocksStorage storage = new PlacedBlocksStorage();
+
+	PlacedBlocksTracker() {
+	}
+
+	private WorldData getWorldData(World world) {
+		WorldData worldData = worlds.get(world);
+		if (worldData == null) {
+			worldData = new WorldData(new File(placedBlocksFolderPath + File.separator + world.getUID().toString()));
+			worlds.put(world, worldData);
+		}
+		return worldData;
+	}
+
+	private File getChunkFile(WorldData worldData, long chunkKey) {
+		int chunkX = (int) (chunkKey >> 32);
+		int chunkZ = (int) chunkKey;
+		return new File(worldData.folder, chunkX + "_" + chunkZ);
+	}
+
+	// starts loading the placed blocks of the given chunk in the background
+	void onChunkLoad(Chunk chunk) {
+		WorldData worldData = this.getWorldData(chunk.getWorld());
+		long chunkKey = BlockPositions.packChunk(chunk.getX(), chunk.getZ());
+		if (worldData.loadedChunks.containsKey(chunkKey)) return;
+		this.startLoad(worldData, chunkKey);
+	}
+
+	// starts loading the placed blocks of the chunks of the given world which are already loaded, for example after a
+	// reload
+	void loadChunks(World world) {
+		for (Chunk chunk : world.getLoadedChunks()) {
+			this.onChunkLoad(chunk);
+		}
+	}
+
+	private ChunkData startLoad(WorldData worldData, long chunkKey) {
+		ChunkData chunkData = new ChunkData(storage.load(this.getChunkFile(worldData, chunkKey)));
+		worldData.loadedChunks.put(chunkKey, chunkData);
+		return chunkData;
+	}
+
+	// gets the placed blocks of the given chunk, waiting for them to be loaded if necessary
+	private ChunkData getChunkData(WorldData worldData, long chunkKey) {
+		ChunkData chunkData = worldData.loadedChunks.get(chunkKey);
+		// the chunk got loaded before we were tracking it, for example because the world just got protections:
+		if (chunkData == null) chunkData = this.startLoad(worldData, chunkKey);
+
+		// usually already done, since the chunk got loaded some time ago:
+		if (chunkData.load != null) this.finishLoad(chunkData);
+		return chunkData;
+	}
+
+	// gets the placed blocks of the given chunk without waiting for them
+	// returns null if the chunk isn't tracked, or if its placed blocks are still being loaded
+	private ChunkData getLoadedChunkData(World world, long chunkKey) {
+		WorldData worldData = worlds.get(world);
+		if (worldData == null) return null;
+		ChunkData chunkData = worldData.loadedChunks.get(chunkKey);
+		if (chunkData == null) return null;
+		if (chunkData.load != null) {
+			if (!chunkData.load.isDone()) return null;
+			this.finishLoad(chunkData);
+		}
+		return chunkData;
+	}
+
+	private void finishLoad(ChunkData chunkData) {
+		for (int position : chunkData.load.join()) {
+			chunkData.positions.add(position);
+		}
+		chunkData.load = null;
+	}
+
+	// remembers the block at the given position as placed by a player
+	void add(World world, int x, int y, int z) {
+		WorldData worldData = this.getWorldData(world);
+		ChunkData chunkData = this.getChunkData(worldData, BlockPositions.packChunk(x >> 4, z >> 4));
+		if (chunkData.positions.size() >= MAX_BLOCKS_PER_CHUNK) return;
+		if (chunkData.positions.add(BlockPositions.packInChunk(x, y, z))) {
+			chunkData.dirty = true;
+		}
+	}
+
+	// forgets the block at the given position, returns true if it was placed by a player
+	boolean remove(World world, int x, int y, int z) {
+		WorldData worldData = this.getWorldData(world);
+		ChunkData chunkData = this.getChunkData(worldData, BlockPositions.packChunk(x >> 4, z >> 4));
+		if (chunkData.positions.remove(BlockPositions.packInChunk(x, y, z))) {
+			chunkData.dirty = true;
+			return true;
+		}
+		return false;
+	}
+
+	// forgets the given blocks, for example because they got destroyed by an explosion
+	// chunks which aren't tracked are skipped, without loading their placed blocks
+	void removeAll(World world, List<Block> blocks) {
+		WorldData worldData = worlds.get(world);
+		if (worldData == null) return;
+
+		long chunkKey = 0L;
+		ChunkData chunkData = null;
+		boolean chunkResolved = false;
+		for (Block block : blocks) {
+			int x = block.getX();
+			int z = block.getZ();
+			long blockChunkKey = BlockPositions.packChunk(x >> 4, z >> 4);
+			if (!chunkResolved || blockChunkKey != chunkKey) {
+				chunkKey = blockChunkKey;
+				chunkResolved = true;
+				chunkData = worldData.loadedChunks.get(chunkKey);
+				// usually already done, since the chunk got loaded some time ago:
+				if (chunkData != null && chunkData.load != null) this.finishLoad(chunkData);
+			}
+			if (chunkData == null) continue;
+			if (chunkData.positions.remove(BlockPositions.packInChunk(x, block.getY(), z))) {
+				chunkData.dirty = true;
+			}
+		}
+	}
+
+	// like add, but ignores chunks whose placed blocks aren't available without waiting for them to be loaded
+	void addIfLoaded(World world, int x, int y, int z) {
+		ChunkData chunkData = this.getLoadedChunkData(world, BlockPositions.packChunk(x >> 4, z >> 4));
+		if (chunkData == null) return;
+		if (chunkData.positions.size() >= MAX_BLOCKS_PER_CHUNK) return;
+		if (chunkData.positions.add(BlockPositions.packInChunk(x, y, z))) {
+			chunkData.dirty = true;
+		}
+	}
+
+	// like remove, but treats chunks whose placed blocks aren't available without waiting for them to be loaded as
+	// having no placed blocks
+	boolean removeIfLoaded(World world, int x, int y, int z) {
+		ChunkData chunkData = this.getLoadedChunkData(world, BlockPositions.packChunk(x >> 4, z >> 4));
+		if (chunkData == null) return false;
+		if (chunkData.positions.remove(BlockPositions.packInChunk(x, y, z))) {
+			chunkData.dirty = true;
+			return true;
+		}
+		return false;
+	}
+
+	// saves and drops the placed blocks of the given chunk from memory
+	void onChunkUnload(Chunk chunk) {
+		WorldData worldData = worlds.get(chunk.getWorld());
+		if (worldData == null) return;
+		long chunkKey = BlockPositions.packChunk(chunk.getX(), chunk.getZ());
+		ChunkData chunkData = worldData.loadedChunks.remove(chunkKey);
+		if (chunkData != null && chunkData.dirty) {
+			this.saveChunkData(worldData, chunkKey, chunkData);
+		}
+	}
+
+	// saves all changed placed blocks of the given world
+	void saveWorld(World world) {
+		WorldData worldData = worlds.get(world);
+		if (worldData == null) return;
+		for (Entry<Long, ChunkData> chunkEntry : worldData.loadedChunks.entrySet()) {
+			ChunkData chunkData = chunkEntry.getValue();
+			if (chunkData.dirty) {
+				this.saveChunkData(worldData, chunkEntry.getKey(), chunkData);
+			}
+		}
+	}
+
+	// saves and drops the placed blocks of the given world from memory
+	void onWorldUnload(World world) {
+		this.saveWorld(world);
+		worlds.remove(world);
+	}
+
+	// saves all changed placed blocks
+	void saveAll() {
+		for (World world : worlds.keySet()) {
+			this.saveWorld(world);
+		}
+	}
+
+	// waits for all pending saves to be written
+	void close() {
+		storage.close();
+	}
+
+	private void saveChunkData(WorldData worldData, long chunkKey, ChunkData chunkData) {
+		chunkData.dirty = false;
+		// chunks without placed blocks get deleted:
+		int[] positions = chunkData.positions.isEmpty() ? PlacedBlocksStorage.NO_POSITIONS : chunkData.positions.toArray();
+		storage.save(this.getChunkFile(worldData, chunkKey), positions);
+	}
+}
@@ -18,27 +18,119 @@
  */
 package me.ryanhamshire.AntiXRay;
 
-import org.bukkit.Location;
+import java.text.DecimalFormat;
 
 // holds all of AntiXray's player-tied data
+// kept compact, as there is one instance per online player: no references to worlds or locations, flags in a bitfield
+// and the remaining fraction of a point in fixed-point
 public class PlayerData {
 
+	private static final DecimalFormat decimalFormat = new DecimalFormat("0.0#");
+
+	// the remaining fraction of a point is stored in units of one millisecond of play time at one point per hour, so
+	// the accrual doesn't need any floating point arithmetic and doesn't lose any precision
+	private static final long REMAINDER_SCALE = 60L * 60L * 1000L;
+
+	private static final byte FLAG_AFK = 1;
+	private static final byte FLAG_EXEMPT = 1 << 1;
+	private static final byte FLAG_REACHED_LIMIT_THIS_SESSION = 1 << 2;
+	private static final byte FLAG_STORED = 1 << 3;
+
 	// a player's "ore score", which determines whether or not he can break a specific block type
 	public int points = AntiXRay.instance.config_startingPoints;
 	public int reachedLimitCount = 0;
 
-	// the amount of points the player received too little (less than 1.0)
-	public double remainingPoints = 0.0D;
+	// the amount of points the player received too little (less than 1.0), in units of 1 / REMAINDER_SCALE points
+	private int remainder = 0;
+
+	// the time in milliseconds up to which this player received his points for playing, 0 if he isn't playing
+	public long accruedUntil = 0L;
+
+	// see the FLAG_ constants
+	private byte flags = 0;
+
+	// the stored values, as of the last time this player data was loaded or saved (if FLAG_STORED is set)
+	private int storedPoints = 0;
+	private int storedReachedLimitCount = 0;
+
+	// when this player was last informed that he can't break a block yet, and how many block breaks were denied since
+	public long lastDeniedBreakMessageTime = 0L;
+	public int deniedBreaksSinceMessage = 0;
+
+	private boolean getFlag(byte flag) {
+		return (flags & flag) != 0;
+	}
+
+	private void setFlag(byte flag, boolean value) {
+		if (value) flags |= flag;
+		else flags &= ~flag;
+	}
 
-	// where this player was the last time we checked on him for earning points
-	public Location lastAfkCheckLocation = null;
-	// the time in minutes the player is already considered being afk in a row
-	public int afkMinutes = 0;
+	// whether this player is considered being afk, and therefore doesn't receive points for playing
+	boolean isAfk() {
+		return this.getFlag(FLAG_AFK);
+	}
+
+	void setAfk(boolean afk) {
+		this.setFlag(FLAG_AFK, afk);
+	}
+
+	// whether or not this player is exempt from the rules (bypass permission, or in creative mode if configured)
+	// cached for the current play session, and refreshed on game mode changes, world changes and regularly
+	boolean isExempt() {
+		return this.getFlag(FLAG_EXEMPT);
+	}
+
+	void setExempt(boolean exempt) {
+		this.setFlag(FLAG_EXEMPT, exempt);
+	}
 
 	// whether or not this player has reached his mining limit this play session
-	public boolean reachedLimitThisSession = false;
+	boolean hasReachedLimitThisSession() {
+		return this.getFlag(FLAG_REACHED_LIMIT_THIS_SESSION);
+	}
+
+	void setReachedLimitThisSession(boolean reachedLimit) {
+		this.setFlag(FLAG_REACHED_LIMIT_THIS_SESSION, reachedLimit);
+	}
+
+	// whether the stored values differ from the current ones, or this player data wasn't stored yet
+	boolean isDirty() {
+		return !this.getFlag(FLAG_STORED) || points != storedPoints || reachedLimitCount != storedReachedLimitCount;
+	}
+
+	// remembers the current values as stored
+	void markStored() {
+		storedPoints = points;
+		storedReachedLimitCount = reachedLimitCount;
+		this.setFlag(FLAG_STORED, true);
+	}
+
+	// gives this player the points he earned for the time played since the last accrual, unless he is afk
+	// based on the actual time passed, so it isn't affected by server lag
+	void accruePoints(long now) {
+		if (accruedUntil == 0L || now <= accruedUntil) return;
+		long playedMillis = now - accruedUntil;
+		accruedUntil = now;
+		if (this.isAfk()) return;
+
+		int maxPoints = AntiXRay.instance.config_maxPoints;
+		long earned = playedMillis * AntiXRay.instance.config_pointsPerHour + remainder;
+		long newPoints = points + earned / REMAINDER_SCALE;
+		remainder = (int) (earned % REMAINDER_SCALE);
 
-	// the location of the last block placed, to allow for breaking a block just now placed without spending ore score
-	public Location lastPlacedBlockLocation = null;
+		// respect limits
+		if (newPoints > maxPoints) {
+			points = maxPoints;
+			remainder = 0;
+		} else {
+			points = (int) newPoints;
+		}
 
+		if (AntiXRay.instance.debug) {
+			AntiXRay.debug("Accrued " + decimalFormat.format(playedMillis * AntiXRay.instance.config_pointsPerHour / (double) REMAINDER_SCALE) + " points for "
+					+ (playedMillis / 1000) + " seconds of playing, now at " + points + " (+" + decimalFormat.format(remainder / (double) REMAINDER_SCALE)
+					+ ") points (max: " + maxPoints + ").");
+		}
+	}
 }
@@ -0,0 +1,179 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+// writes player data files on a dedicated thread, so that saving player data doesn't block the main thread (for
+// example when lots of players disconnect at once)
+// saves of the same file which weren't written yet are coalesced to the latest state
+// the number of pending writes is bounded: if the writer falls behind, saving blocks until there is space again
+class PlayerDataWriter implements Runnable {
+
+	private static final int CAPACITY = 1024;
+
+	// an immutable snapshot of the saved player data
+	static class PendingWrite {
+
+		final int points;
+		final int reachedLimitCount;
+
+		private PendingWrite(int points, int reachedLimitCount) {
+			this.points = points;
+			this.reachedLimitCount = reachedLimitCount;
+		}
+	}
+
+	private final Object lock = new Object();
+	// the writes which weren't completed yet, in the order they were first requested
+	// an entry is only removed after it got written, so that loading data never reads an outdated file
+	private final LinkedHashMap<File, PendingWrite> pendingWrites = new LinkedHashMap<File, PendingWrite>();
+	private boolean closed = false;
+
+	private final Thread thread;
+
+	PlayerDataWriter() {
+		thread = new Thread(this, "AntiXRay player data writer");
+		thread.start();
+	}
+
+	// queues the player data to be written to the given file
+	void save(File file, PlayerData playerData) {
+		PendingWrite write = new PendingWrite(playerData.points, playerData.reachedLimitCount);
+		synchronized (lock) {
+			if (!closed) {
+				// wait for space, unless this only replaces a pending write:
+				boolean interrupted = false;
+				while (pendingWrites.size() >= CAPACITY && !pendingWrites.containsKey(file) && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) Thread.currentThread().interrupt();
+			}
+			if (!closed) {
+				pendingWrites.put(file, write);
+				lock.notifyAll();
+				return;
+			}
+		}
+		// already closed: write it right away
+		writeFile(file, write);
+	}
+
+	// returns the data which is going to be written to the given file, or null if there is no pending write for it
+	PendingWrite getPendingWrite(File file) {
+		synchronized (lock) {
+			return pendingWrites.get(file);
+		}
+	}
+
+	// drops the pending write for the given file, if there is one
+	void cancel(File file) {
+		synchronized (lock) {
+			if (pendingWrites.remove(file) != null) lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			File file;
+			PendingWrite write;
+			synchronized (lock) {
+				while (pendingWrites.isEmpty()) {
+					if (closed) return;
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// only stop once everything got written
+					}
+				}
+				Iterator<Entry<File, PendingWrite>> iterator = pendingWrites.entrySet().iterator();
+				Entry<File, PendingWrite> next = iterator.next();
+				file = next.getKey();
+				write = next.getValue();
+			}
+
+			writeFile(file, write);
+
+			synchronized (lock) {
+				// unless it got replaced by a newer state in the meantime:
+				if (pendingWrites.get(file) == write) {
+					pendingWrites.remove(file);
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	// writes all pending writes and stops the writer thread
+	void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static void writeFile(File playerFile, PendingWrite write) {
+		BufferedWriter outStream = null;
+		try {
+			// open the player's file
+			playerFile.createNewFile();
+			outStream = new BufferedWriter(new FileWriter(playerFile));
+
+			// first line is available points
+			outStream.write(String.valueOf(write.points));
+			outStream.newLine();
+
+			// second line is, how often the player has already reached his limit
+			outStream.write(String.valueOf(write.reachedLimitCount));
+			outStream.newLine();
+		} catch (Exception e) {
+			// if any problem, log it
+			AntiXRay.logger.severe("Unexpected exception saving player data to \"" + playerFile.getPath() + "\": " + e.getMessage());
+		}
+
+		try {
+			// close the file
+			if (outStream != null) {
+				outStream.close();
+			}
+		} catch (IOException exception) {
+		}
+	}
+}
@@ -20,10 +20,12 @@ package me.ryanhamshire.AntiXRay;
 
 import java.util.UUID;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
 import org.bukkit.event.player.*;
 
 class PlayerEventHandler implements Listener {
@@ -34,12 +36,95 @@ class PlayerEventHandler implements Listener {
 		this.dataStore = dataStore;
 	}
 
+	// when a player is logging in... called asynchronously, before he joins
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+		if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+		// load his data now, instead of on the main thread when he joins
+		dataStore.prefetchPlayerData(event.getUniqueId(), event.getName());
+	}
+
+	// when the login of a player fails... (for example because he is banned, or the server is full)
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerLogin(PlayerLoginEvent event) {
+		if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+			dataStore.discardPrefetchedPlayerData(event.getPlayer().getUniqueId());
+		}
+	}
+
 	// when a player successfully joins the server...
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
 	void onPlayerJoin(PlayerJoinEvent event) {
+		Player player = event.getPlayer();
+
 		// get his player data, forcing it to initialize if we've never seen him before
-		@SuppressWarnings("unused")
-		PlayerData playerData = dataStore.getOrCreatePlayerData(event.getPlayer());
+		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
+
+		// add him to the online players, which also starts checking regularly whether he is afk
+		AntiXRay.instance.onlinePlayers.add(player, playerData);
+
+		// check if he gets notified about players reaching their mining limit
+		AntiXRay.instance.moderators.update(player);
+	}
+
+	// when a player changes his game mode...
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPlayerGameModeChange(PlayerGameModeChangeEvent event) {
+		Player player = event.getPlayer();
+		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
+		// the player's game mode is only changed after this event:
+		playerData.setExempt(AntiXRay.isExempt(player, event.getNewGameMode()));
+	}
+
+	// when a player changes the world... (permissions might be world specific)
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+		Player player = event.getPlayer();
+		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
+		playerData.setExempt(AntiXRay.isExempt(player, player.getGameMode()));
+		AntiXRay.instance.moderators.update(player);
+	}
+
+	// when a player moves or looks around... collects his activity for the afk check
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPlayerMove(PlayerMoveEvent event) {
+		Player player = event.getPlayer();
+		OnlinePlayers onlinePlayers = AntiXRay.instance.onlinePlayers;
+		int slot = onlinePlayers.getSlot(player.getUniqueId());
+
+		// nothing more to collect until the next check
+		if (slot == OnlinePlayers.NO_SLOT || onlinePlayers.activeSinceAfkCheck[slot]) return;
+
+		Location from = event.getFrom();
+		Location to = event.getTo();
+		if (from.getYaw() != to.getYaw() || from.getPitch() != to.getPitch()) {
+			onlinePlayers.lookChanges[slot]++;
+		}
+		// vehicles moving the player around don't count
+		if (from.getWorld() == to.getWorld() && !player.isInsideVehicle()) {
+			onlinePlayers.movedDistances[slot] += Math.abs(to.getX() - from.getX()) + Math.abs(to.getY() - from.getY()) + Math.abs(to.getZ() - from.getZ());
+		}
+
+		if (onlinePlayers.movedDistances[slot] > AfkCheckTask.MIN_MOVED_DISTANCE && onlinePlayers.lookChanges[slot] >= AfkCheckTask.MIN_LOOK_CHANGES) {
+			onlinePlayers.activeSinceAfkCheck[slot] = true;
+		}
+	}
+
+	// when a player interacts... (also called for clicks into the air, which are cancelled by default)
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerInteract(PlayerInteractEvent event) {
+		// stepping on pressure plates doesn't require the player to be active
+		if (event.getAction() == Action.PHYSICAL) return;
+		OnlinePlayers onlinePlayers = AntiXRay.instance.onlinePlayers;
+		int slot = onlinePlayers.getSlot(event.getPlayer().getUniqueId());
+		if (slot != OnlinePlayers.NO_SLOT) onlinePlayers.activeSinceAfkCheck[slot] = true;
+	}
+
+	// when a player chats... called asynchronously
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onPlayerChat(AsyncPlayerChatEvent event) {
+		AntiXRay.instance.afkCheckTask.onChat(event.getPlayer());
 	}
 
 	// when a player quits...
@@ -48,10 +133,16 @@ class PlayerEventHandler implements Listener {
 		Player player = event.getPlayer();
 		UUID uuid = player.getUniqueId();
 
-		// save player data, just in case he accrued some block points which haven't been saved yet
-		dataStore.savePlayerData(uuid, dataStore.getOrCreatePlayerData(player));
+		// save player data, including the points he earned since the last accrual, if anything changed
+		PlayerData playerData = dataStore.getOrCreatePlayerData(player);
+		playerData.accruePoints(System.currentTimeMillis());
+		dataStore.savePlayerDataIfDirty(uuid, playerData);
 
 		// drop player data from memory
 		dataStore.clearCachedPlayerData(uuid);
+		AntiXRay.instance.onlinePlayers.remove(uuid);
+		AntiXRay.instance.afkCheckTask.removePlayer(player);
+		AntiXRay.instance.moderators.remove(player);
+		AntiXRay.instance.deniedBreakMessages.removePlayer(player);
 	}
 }
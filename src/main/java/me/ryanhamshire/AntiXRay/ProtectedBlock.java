@@ -18,20 +18,68 @@
  */
 package me.ryanhamshire.AntiXRay;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
 import org.bukkit.Material;
-import org.bukkit.block.Block;
 
 // Holds data about protected blocks
 class ProtectedBlock {
 
+	// returned by getValue(height) if the block is not protected at the given height
+	static final int NOT_PROTECTED = Integer.MIN_VALUE;
+
+	// bounds for the precomputed height range, generously covering all possible world heights
+	private static final int MIN_HEIGHT = -2048;
+	private static final int MAX_HEIGHT = 4096;
+
+	// the key by which this protection was configured: the block type, or a tag or group of blocks
+	private final String configKey;
 	private final Material type;
 	private final int value;
 	private final int maxHeight;
+	// additional height tiers <maxHeight -> value>, sorted by height
+	private final Map<Integer, Integer> heightTiers;
+
+	// the values of all tiers, precomputed for each height between the lowest and the highest tier
+	private final int lowestHeight;
+	private final int[] valuesByHeight;
 
 	public ProtectedBlock(Material type, int value, int maxHeight) {
+		this(type.name(), type, value, maxHeight, Collections.<Integer, Integer> emptyMap());
+	}
+
+	public ProtectedBlock(String configKey, Material type, int value, int maxHeight, Map<Integer, Integer> heightTiers) {
+		this.configKey = configKey;
 		this.type = type;
 		this.value = value;
 		this.maxHeight = maxHeight;
+		this.heightTiers = Collections.unmodifiableMap(new TreeMap<Integer, Integer>(heightTiers));
+
+		// all tiers, including the main one (which overwrites an additional tier with the same height):
+		TreeMap<Integer, Integer> allTiers = new TreeMap<Integer, Integer>();
+		for (Entry<Integer, Integer> tier : heightTiers.entrySet()) {
+			allTiers.put(clampHeight(tier.getKey()), tier.getValue());
+		}
+		allTiers.put(clampHeight(maxHeight), value);
+
+		// each height uses the value of the lowest tier whose max height is not below it:
+		this.lowestHeight = allTiers.firstKey();
+		int highestHeight = allTiers.lastKey();
+		this.valuesByHeight = new int[highestHeight - lowestHeight + 1];
+		for (int height = lowestHeight; height <= highestHeight; height++) {
+			valuesByHeight[height - lowestHeight] = allTiers.ceilingEntry(height).getValue();
+		}
+	}
+
+	private static int clampHeight(int height) {
+		return Math.max(MIN_HEIGHT, Math.min(MAX_HEIGHT, height));
+	}
+
+	public String getConfigKey() {
+		return configKey;
 	}
 
 	public Material getType() {
@@ -46,13 +94,37 @@ class ProtectedBlock {
 		return maxHeight;
 	}
 
-	// check if this ProtectedBlock's type equals a given type of block 
-	public boolean isOfSameType(Block block) {
-		return (block != null && type == block.getType());
+	public Map<Integer, Integer> getHeightTiers() {
+		return heightTiers;
+	}
+
+	// the highest height at which this block is protected by any of its tiers
+	public int getHighestHeight() {
+		return lowestHeight + valuesByHeight.length - 1;
+	}
+
+	// whether this block has a positive value at any height
+	public boolean hasPositiveValue() {
+		for (int heightValue : valuesByHeight) {
+			if (heightValue > 0) return true;
+		}
+		return false;
+	}
+
+	// whether breaking this block costs (or gives) points at any height
+	public boolean hasNonZeroValue() {
+		for (int heightValue : valuesByHeight) {
+			if (heightValue != 0) return true;
+		}
+		return false;
 	}
 
-	// check if this ProtectedBlock's type equals another ProtectedBlock's type
-	public boolean isOfSameType(ProtectedBlock protectedBlock) {
-		return (protectedBlock != null && type == protectedBlock.getType());
+	// gets the value of this block at the given height, or NOT_PROTECTED if the height is above all tiers
+	public int getValue(int height) {
+		int index = height - lowestHeight;
+		// everything below the lowest tier uses the value of the lowest tier:
+		if (index < 0) return valuesByHeight[0];
+		if (index >= valuesByHeight.length) return NOT_PROTECTED;
+		return valuesByHeight[index];
 	}
 }
@@ -18,52 +18,73 @@
  */
 package me.ryanhamshire.AntiXRay;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
 // Stores information about all block protections per world.
 class ProtectedBlocks {
 
-	// stores protections by world <worldName -> protection>
-	private final Map<String, List<ProtectedBlock>> worlds = new HashMap<String, List<ProtectedBlock>>();
+	// stores the compiled protections of all configured worlds by world name <worldName -> protections>
+	private final Map<String, WorldProtections> configuredWorlds = new HashMap<String, WorldProtections>();
+	// the protections of the currently loaded configured worlds, resolved once when the world or the config gets loaded,
+	// so that lookups during events are by world identity <world -> protections>
+	private final Map<World, WorldProtections> loadedWorlds = new IdentityHashMap<World, WorldProtections>();
 
 	ProtectedBlocks() {
 	}
 
-	void addWorld(String worldName) {
-		worlds.put(worldName, new ArrayList<ProtectedBlock>());
+	void clear() {
+		configuredWorlds.clear();
+		loadedWorlds.clear();
 	}
 
-	void clear() {
-		worlds.clear();
+	// compiles and sets the protections of a world, replacing any previous protections of that world
+	// if the world isn't loaded yet, the protections get attached once it loads
+	void setProtections(String worldName, List<ProtectedBlock> protectedBlocks, List<ValueRule> rules) {
+		WorldProtections worldProtections = new WorldProtections(protectedBlocks, rules);
+		configuredWorlds.put(worldName, worldProtections);
+
+		World world = Bukkit.getWorld(worldName);
+		if (world != null) {
+			loadedWorlds.put(world, worldProtections);
+		}
 	}
 
-	void addProtection(String worldName, ProtectedBlock protectedBlock) {
-		List<ProtectedBlock> worldBlockData = worlds.get(worldName);
-		if (worldBlockData == null) {
-			worldBlockData = new ArrayList<ProtectedBlock>();
-			worlds.put(worldName, worldBlockData);
+	// attaches the configured protections (if there are any) to the given, freshly loaded world
+	void onWorldLoad(World world) {
+		WorldProtections worldProtections = configuredWorlds.get(world.getName());
+		if (worldProtections != null) {
+			loadedWorlds.put(world, worldProtections);
 		}
-		// check if protection for the same type of block already exists and remove it:
-		int foundIndex = -1;
-		for (int i = 0; i < worldBlockData.size(); i++) {
-			if (worldBlockData.get(i).isOfSameType(protectedBlock)) {
-				foundIndex = i;
-				// we can assume that there is max one ProtectedBlock of the same type..
-				break;
-			}
+	}
+
+	// detaches the protections from the given world, so that unloaded worlds don't stay referenced
+	void onWorldUnload(World world) {
+		loadedWorlds.remove(world);
+	}
+
+	// whether breaking blocks in any configured world can cost (or give) points
+	boolean hasBlockBreakProtections() {
+		for (WorldProtections worldProtections : configuredWorlds.values()) {
+			if (worldProtections.hasBlockBreakProtections()) return true;
 		}
-		if (foundIndex != -1) worldBlockData.remove(foundIndex);
-		worldBlockData.add(protectedBlock);
+		return false;
 	}
 
-	boolean isWorldProtected(String worldName) {
-		return worlds.containsKey(worldName);
+	// whether any configured world has protected blocks which need to be protected from explosions
+	boolean hasExplosionProtections() {
+		for (WorldProtections worldProtections : configuredWorlds.values()) {
+			if (worldProtections.hasExplosionProtections()) return true;
+		}
+		return false;
 	}
 
-	List<ProtectedBlock> getProtections(String worldName) {
-		return worlds.get(worldName);
+	WorldProtections getProtections(World world) {
+		return loadedWorlds.get(world);
 	}
 }
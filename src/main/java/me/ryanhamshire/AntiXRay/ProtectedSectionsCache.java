@@ -0,0 +1,180 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+// Caches for chunk sections (16x16x16 blocks) whether they contain any protected blocks, so that large explosions can
+// skip whole sections without protected blocks instead of checking each of their blocks.
+// Sections only get scanned if an explosion contains enough of their blocks, since a scan reads all 4096 blocks of the
+// section from a chunk snapshot.
+// This only pays off for repeated explosions at the same place, such as chained tnt or tnt cannons: a single explosion
+// reads more block types than without the cache (see ExplosionSectionScanBenchmark).
+// Sections get invalidated when blocks get placed or moved into them, and when their chunk unloads. Blocks changed
+// without any events (for example by WorldEdit or other plugins) are missed though: protected blocks which appear in a
+// section cached as unprotected aren't protected from explosions until the cached section expires. The expiration is
+// therefore kept short, only covering bursts of explosions.
+class ProtectedSectionsCache {
+
+	// the cached sections cover heights from -512 to 511, one bit per section
+	private static final int MIN_SECTION = -32;
+	private static final int MAX_SECTION = 31;
+	private static final long EXPIRATION_MILLIS = 5000L;
+	// unchecked sections get scanned if an explosion contains at least this many of their blocks:
+	// reading a block type from a chunk snapshot is a lot cheaper than Block#getType, and the result gets reused by
+	// later explosions
+	private static final int SECTION_SCAN_MIN_BLOCKS = 512;
+
+	// the cached sections of a chunk
+	static class ChunkSections {
+
+		private long checkedSections = 0L;
+		private long protectedSections = 0L;
+		private long expiration;
+
+		private ChunkSections(long now) {
+			this.expiration = now + EXPIRATION_MILLIS;
+		}
+
+		// whether the given section was already checked (or can't be cached)
+		boolean isChecked(int sectionY) {
+			if (sectionY < MIN_SECTION || sectionY > MAX_SECTION) return true;
+			return (checkedSections & (1L << (sectionY - MIN_SECTION))) != 0L;
+		}
+
+		// whether the given section might contain protected blocks:
+		// false only if it was checked and didn't contain any protected blocks
+		boolean mightContainProtected(int sectionY) {
+			if (sectionY < MIN_SECTION || sectionY > MAX_SECTION) return true;
+			long bit = 1L << (sectionY - MIN_SECTION);
+			return (checkedSections & bit) == 0L || (protectedSections & bit) != 0L;
+		}
+
+		// checks the blocks of the given section of the chunk snapshot for protected blocks
+		void check(int sectionY, ChunkSnapshot chunkSnapshot, WorldProtections protections) {
+			if (sectionY < MIN_SECTION || sectionY > MAX_SECTION) return;
+			long bit = 1L << (sectionY - MIN_SECTION);
+			checkedSections |= bit;
+			protectedSections &= ~bit;
+
+			int minY = sectionY << 4;
+			for (int y = minY; y < minY + 16; y++) {
+				for (int z = 0; z < 16; z++) {
+					for (int x = 0; x < 16; x++) {
+						if (protections.mightBeProtected(chunkSnapshot.getBlockType(x, y, z), y)) {
+							protectedSections |= bit;
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		private void invalidate(int sectionY) {
+			if (sectionY < MIN_SECTION || sectionY > MAX_SECTION) return;
+			checkedSections &= ~(1L << (sectionY - MIN_SECTION));
+		}
+	}
+
+	// cached chunks by world <world -> <chunkKey -> sections>>
+	private final Map<World, Map<Long, ChunkSections>> worlds = new IdentityHashMap<World, Map<Long, ChunkSections>>();
+
+	ProtectedSectionsCache() {
+	}
+
+	// gets (or creates) the cached sections of the given chunk, resetting them if they are expired
+	ChunkSections getChunkSections(World world, int chunkX, int chunkZ, long now) {
+		Map<Long, ChunkSections> chunks = worlds.get(world);
+		if (chunks == null) {
+			chunks = new HashMap<Long, ChunkSections>();
+			worlds.put(world, chunks);
+		}
+
+		Long chunkKey = BlockPositions.packChunk(chunkX, chunkZ);
+		ChunkSections chunkSections = chunks.get(chunkKey);
+		if (chunkSections == null) {
+			chunkSections = new ChunkSections(now);
+			chunks.put(chunkKey, chunkSections);
+		} else if (now >= chunkSections.expiration) {
+			chunkSections.checkedSections = 0L;
+			chunkSections.protectedSections = 0L;
+			chunkSections.expiration = now + EXPIRATION_MILLIS;
+		}
+		return chunkSections;
+	}
+
+	// decides for each of the exploded sections whether its blocks can be skipped or need to be checked individually,
+	// scanning those unchecked sections which contain enough of the exploded blocks
+	void checkSections(World world, WorldProtections protections, ExplodedSections sections, long now) {
+		int size = sections.size();
+		for (int index = 0; index < size; index++) {
+			if (sections.getState(index) != ExplodedSections.UNDECIDED) continue;
+			long sectionKey = sections.getKey(index);
+			int chunkX = BlockPositions.unpackSectionChunkX(sectionKey);
+			int chunkZ = BlockPositions.unpackSectionChunkZ(sectionKey);
+			ChunkSections chunkSections = this.getChunkSections(world, chunkX, chunkZ, now);
+
+			// decide all remaining sections of this chunk at once, so that the chunk gets copied at most once:
+			ChunkSnapshot chunkSnapshot = null;
+			for (int chunkIndex = index; chunkIndex < size; chunkIndex++) {
+				if (sections.getState(chunkIndex) != ExplodedSections.UNDECIDED) continue;
+				long chunkSectionKey = sections.getKey(chunkIndex);
+				if (BlockPositions.unpackSectionChunkX(chunkSectionKey) != chunkX
+						|| BlockPositions.unpackSectionChunkZ(chunkSectionKey) != chunkZ) {
+					continue;
+				}
+
+				int sectionY = BlockPositions.unpackSectionY(chunkSectionKey);
+				if (!chunkSections.isChecked(sectionY) && sections.getCount(chunkIndex) >= SECTION_SCAN_MIN_BLOCKS) {
+					if (chunkSnapshot == null) chunkSnapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+					chunkSections.check(sectionY, chunkSnapshot, protections);
+				}
+				sections.setState(chunkIndex, chunkSections.mightContainProtected(sectionY) ? ExplodedSections.CHECK : ExplodedSections.SKIP);
+			}
+		}
+	}
+
+	// invalidates the section containing the given block, because the block might have changed to a protected block
+	void invalidate(World world, int x, int y, int z) {
+		Map<Long, ChunkSections> chunks = worlds.get(world);
+		if (chunks == null) return;
+		ChunkSections chunkSections = chunks.get(BlockPositions.packChunk(x >> 4, z >> 4));
+		if (chunkSections == null) return;
+		chunkSections.invalidate(y >> 4);
+	}
+
+	void removeChunk(World world, int chunkX, int chunkZ) {
+		Map<Long, ChunkSections> chunks = worlds.get(world);
+		if (chunks == null) return;
+		chunks.remove(BlockPositions.packChunk(chunkX, chunkZ));
+	}
+
+	void removeWorld(World world) {
+		worlds.remove(world);
+	}
+
+	void clear() {
+		worlds.clear();
+	}
+}
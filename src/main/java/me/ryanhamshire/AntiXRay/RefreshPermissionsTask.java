@@ -0,0 +1,44 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import org.bukkit.entity.Player;
+
+// regularly refreshes the cached permission related state of all online players (exemption state and moderators), in
+// case their permissions changed in the meantime (there is no event for permission changes)
+class RefreshPermissionsTask implements Runnable {
+
+	// 20L ~ 1 second
+	static final long INTERVAL_TICKS = 20L * 30;
+
+	RefreshPermissionsTask() {
+	}
+
+	@Override
+	public void run() {
+		OnlinePlayers onlinePlayers = AntiXRay.instance.onlinePlayers;
+		Moderators moderators = AntiXRay.instance.moderators;
+		for (int slot = 0, size = onlinePlayers.size(); slot < size; slot++) {
+			Player player = onlinePlayers.getPlayer(slot);
+			PlayerData playerData = onlinePlayers.getPlayerData(slot);
+			playerData.setExempt(AntiXRay.isExempt(player, player.getGameMode()));
+			moderators.update(player);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.Set;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+// A configured rule which changes the value of protected blocks depending on the context in which they are broken,
+// like the tool used, its enchantments, or the biome of the block.
+// Conditions are precompiled into arrays and primitives, so that matching a rule requires no lookups.
+class ValueRule {
+
+	// silk touch conditions
+	static final int ANY = 0;
+	static final int WITH = 1;
+	static final int WITHOUT = 2;
+
+	private final Set<String> worldNames; // null for all worlds
+	private final Set<Material> blockTypes; // null for all protected blocks
+	private final boolean[] tools; // by material ordinal, null for any tool
+	private final boolean[] biomes; // by biome ordinal, null for any biome
+	private final int silkTouch;
+	private final int minFortune;
+	private final int maxFortune;
+
+	// the effect: either a fixed value, or a multiplier for the block's value
+	private final Integer value;
+	private final double multiplier;
+
+	ValueRule(Set<String> worldNames, Set<Material> blockTypes, Set<Material> tools, Set<Biome> biomes, int silkTouch, int minFortune, int maxFortune, Integer value, double multiplier) {
+		this.worldNames = worldNames;
+		this.blockTypes = blockTypes;
+		this.tools = (tools != null ? this.toArray(tools, Material.values().length) : null);
+		this.biomes = (biomes != null ? this.toArray(biomes, Biome.values().length) : null);
+		this.silkTouch = silkTouch;
+		this.minFortune = minFortune;
+		this.maxFortune = maxFortune;
+		this.value = value;
+		this.multiplier = multiplier;
+	}
+
+	private boolean[] toArray(Set<? extends Enum<?>> values, int length) {
+		boolean[] array = new boolean[length];
+		for (Enum<?> value : values) {
+			array[value.ordinal()] = true;
+		}
+		return array;
+	}
+
+	boolean appliesToWorld(String worldName) {
+		return worldNames == null || worldNames.contains(worldName);
+	}
+
+	boolean appliesToBlock(Material blockType) {
+		return blockTypes == null || blockTypes.contains(blockType);
+	}
+
+	boolean checksTool() {
+		return tools != null;
+	}
+
+	boolean checksEnchantments() {
+		return silkTouch != ANY || minFortune > 0 || maxFortune < Integer.MAX_VALUE;
+	}
+
+	boolean checksBiome() {
+		return biomes != null;
+	}
+
+	boolean matches(Material toolType, boolean hasSilkTouch, int fortune, Biome biome) {
+		if (tools != null && !tools[toolType.ordinal()]) return false;
+		if (silkTouch == WITH && !hasSilkTouch) return false;
+		if (silkTouch == WITHOUT && hasSilkTouch) return false;
+		if (fortune < minFortune || fortune > maxFortune) return false;
+		if (biomes != null && !biomes[biome.ordinal()]) return false;
+		return true;
+	}
+
+	int apply(int blockValue) {
+		if (value != null) return value;
+		return (int) Math.round(blockValue * multiplier);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+// The compiled chain of value rules for one type of block in one world.
+// The first matching rule determines the block's value. Only the context which is checked by any of the rules gets
+// looked up.
+class ValueRules {
+
+	private final ValueRule[] rules;
+	private final boolean checksTool;
+	private final boolean checksEnchantments;
+	private final boolean checksBiome;
+
+	ValueRules(List<ValueRule> rules) {
+		this.rules = rules.toArray(new ValueRule[rules.size()]);
+		boolean checksTool = false;
+		boolean checksEnchantments = false;
+		boolean checksBiome = false;
+		for (ValueRule rule : rules) {
+			checksTool |= rule.checksTool();
+			checksEnchantments |= rule.checksEnchantments();
+			checksBiome |= rule.checksBiome();
+		}
+		this.checksTool = checksTool;
+		this.checksEnchantments = checksEnchantments;
+		this.checksBiome = checksBiome;
+	}
+
+	// returns the value of the given block when broken by the given player
+	int apply(int value, Player player, Block block) {
+		Material toolType = Material.AIR;
+		boolean hasSilkTouch = false;
+		int fortune = 0;
+		if (checksTool || checksEnchantments) {
+			ItemStack tool = player.getInventory().getItemInMainHand();
+			if (tool != null) {
+				toolType = tool.getType();
+				if (checksEnchantments) {
+					hasSilkTouch = tool.getEnchantmentLevel(Enchantment.SILK_TOUCH) > 0;
+					fortune = tool.getEnchantmentLevel(Enchantment.LOOT_BONUS_BLOCKS);
+				}
+			}
+		}
+		Biome biome = (checksBiome ? block.getBiome() : null);
+
+		for (ValueRule rule : rules) {
+			if (rule.matches(toolType, hasSilkTouch, fortune, biome)) {
+				return rule.apply(value);
+			}
+		}
+		return value;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+// keeps the per world protections in sync with the worlds which are currently loaded,
+// so that worlds which get loaded after startup (for example by Multiverse) get their protections without a reload,
+// and stores the placed blocks of chunks and worlds along with them
+class WorldListener implements Listener {
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onWorldLoad(WorldLoadEvent event) {
+		World world = event.getWorld();
+		AntiXRay.getProtections().onWorldLoad(world);
+		// its spawn chunks might have been loaded before the world got its protections:
+		if (AntiXRay.getProtections().getProtections(world) != null) {
+			AntiXRay.getPlacedBlocks().loadChunks(world);
+		}
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onWorldUnload(WorldUnloadEvent event) {
+		AntiXRay.getProtections().onWorldUnload(event.getWorld());
+		AntiXRay.getPlacedBlocks().onWorldUnload(event.getWorld());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onWorldSave(WorldSaveEvent event) {
+		AntiXRay.getPlacedBlocks().saveWorld(event.getWorld());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onChunkLoad(ChunkLoadEvent event) {
+		// placed blocks are only tracked in worlds with protections
+		Chunk chunk = event.getChunk();
+		if (AntiXRay.getProtections().getProtections(chunk.getWorld()) == null) return;
+		AntiXRay.getPlacedBlocks().onChunkLoad(chunk);
+	}
+
+	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+	void onChunkUnload(ChunkUnloadEvent event) {
+		AntiXRay.getPlacedBlocks().onChunkUnload(event.getChunk());
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Material;
+
+/**
+ * The compiled, immutable block protections of a single world.
+ * <p>
+ * Protections are indexed by the ordinal of their block type, so that looking up the protection of a block is a single
+ * array read instead of a search through all configured protections.
+ * <p>
+ * Additionally, a compact bitset of the protected block types and the highest protected height allow quickly rejecting
+ * the vast majority of broken blocks (stone, dirt, wood, ..) before doing any other work.
+ */
+class WorldProtections {
+
+	private static final Material[] MATERIALS = Material.values();
+
+	// protection by material ordinal, null if the material is not protected
+	private final ProtectedBlock[] protections = new ProtectedBlock[MATERIALS.length];
+	private final int protectionsCount;
+	// the compiled value rules by material ordinal, null if there are no rules for the material
+	private final ValueRules[] valueRules = new ValueRules[MATERIALS.length];
+
+	// bitset of the protected materials, by material ordinal
+	private final long[] protectedTypes = new long[(MATERIALS.length + 63) >>> 6];
+	// the highest height at which any block is protected in this world
+	private final int highestProtectedHeight;
+	// whether any block has a positive value at any height (only those get protected from explosions)
+	private final boolean explosionProtections;
+	// whether breaking any block costs (or gives) points, at any height or due to value rules
+	private final boolean blockBreakProtections;
+
+	// later protections for the same block type replace earlier ones
+	// the given value rules are expected to apply to this world
+	WorldProtections(List<ProtectedBlock> protectedBlocks, List<ValueRule> rules) {
+		int count = 0;
+		for (ProtectedBlock protectedBlock : protectedBlocks) {
+			int index = protectedBlock.getType().ordinal();
+			if (protections[index] == null) count++;
+			protections[index] = protectedBlock;
+		}
+		this.protectionsCount = count;
+
+		int highestHeight = Integer.MIN_VALUE;
+		boolean explosionProtections = false;
+		boolean blockBreakProtections = false;
+		for (ProtectedBlock protectedBlock : protections) {
+			if (protectedBlock == null) continue;
+			int index = protectedBlock.getType().ordinal();
+			protectedTypes[index >>> 6] |= (1L << index);
+			highestHeight = Math.max(highestHeight, protectedBlock.getHighestHeight());
+			explosionProtections |= protectedBlock.hasPositiveValue();
+			blockBreakProtections |= protectedBlock.hasNonZeroValue();
+
+			// compile the rules for this type of block:
+			List<ValueRule> blockRules = new ArrayList<ValueRule>();
+			for (ValueRule rule : rules) {
+				if (rule.appliesToBlock(protectedBlock.getType())) {
+					blockRules.add(rule);
+				}
+			}
+			if (!blockRules.isEmpty()) {
+				valueRules[index] = new ValueRules(blockRules);
+				blockBreakProtections = true;
+			}
+		}
+		this.highestProtectedHeight = highestHeight;
+		this.explosionProtections = explosionProtections;
+		this.blockBreakProtections = blockBreakProtections;
+	}
+
+	boolean isEmpty() {
+		return protectionsCount == 0;
+	}
+
+	boolean hasExplosionProtections() {
+		return explosionProtections;
+	}
+
+	boolean hasBlockBreakProtections() {
+		return blockBreakProtections;
+	}
+
+	// quick check whether a block of the given type at the given height might be protected in this world
+	// if this returns false, the block is definitely not protected
+	boolean mightBeProtected(Material blockType, int height) {
+		if (height > highestProtectedHeight) return false;
+		int index = blockType.ordinal();
+		return (protectedTypes[index >>> 6] & (1L << index)) != 0L;
+	}
+
+	// returns null if the given type of block is not protected in this world
+	ProtectedBlock getProtection(Material blockType) {
+		return protections[blockType.ordinal()];
+	}
+
+	// returns null if there are no value rules for the given type of block in this world
+	ValueRules getValueRules(Material blockType) {
+		return valueRules[blockType.ordinal()];
+	}
+}
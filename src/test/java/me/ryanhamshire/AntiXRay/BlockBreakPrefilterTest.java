@@ -0,0 +1,51 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.bukkit.Material;
+import org.junit.Test;
+
+// tests the common case in BlockEventHandler#onBlockBreak: rejecting breaks of unprotected blocks via the per world
+// bitset of protected materials and the highest protected height (see BlockBreakPrefilterBenchmark for its cost)
+public class BlockBreakPrefilterTest {
+
+	static WorldProtections createProtections() {
+		return new WorldProtections(Arrays.asList(
+				new ProtectedBlock(Material.DIAMOND_ORE, 20, 16),
+				new ProtectedBlock(Material.EMERALD_ORE, 30, 32),
+				new ProtectedBlock(Material.GOLD_ORE, 5, 32)),
+				Collections.<ValueRule> emptyList());
+	}
+
+	@Test
+	public void prefilter() {
+		WorldProtections protections = createProtections();
+		assertFalse(protections.mightBeProtected(Material.STONE, 10));
+		assertFalse(protections.mightBeProtected(Material.OAK_LOG, 70));
+		assertTrue(protections.mightBeProtected(Material.DIAMOND_ORE, 10));
+		// above the highest protected height:
+		assertFalse(protections.mightBeProtected(Material.DIAMOND_ORE, 33));
+	}
+}
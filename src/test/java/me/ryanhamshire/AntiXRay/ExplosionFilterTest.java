@@ -0,0 +1,64 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.junit.Test;
+
+// tests that ExplosionsListener#removeProtectedBlocks keeps exactly the unprotected blocks of a large explosion
+public class ExplosionFilterTest {
+
+	// stone, with some diamond ore sprinkled in below height 16
+	static Material getTerrainType(int x, int y, int z) {
+		if (y < 16 && ((x * 31 + y * 17 + z * 7) & 63) == 0) return Material.DIAMOND_ORE;
+		return Material.STONE;
+	}
+
+	static WorldProtections createProtections() {
+		return new WorldProtections(Arrays.asList(new ProtectedBlock(Material.DIAMOND_ORE, 20, 16)), Collections.<ValueRule> emptyList());
+	}
+
+	@Test
+	public void removesOnlyProtectedBlocks() {
+		FakeWorld world = new FakeWorld(ExplosionFilterTest::getTerrainType);
+		List<Block> explosion = world.getSphere(0, 10, 0, 13.4D);
+		int protectedCount = 0;
+		for (Block block : explosion) {
+			if (getTerrainType(block.getX(), block.getY(), block.getZ()) == Material.DIAMOND_ORE) protectedCount++;
+		}
+		assertTrue(protectedCount > 0);
+
+		List<Block> blocks = new ArrayList<Block>(explosion);
+		new ExplosionsListener().removeProtectedBlocks(world.getWorld(), createProtections(), blocks);
+
+		assertEquals(explosion.size() - protectedCount, blocks.size());
+		for (Block block : blocks) {
+			assertEquals(Material.STONE, getTerrainType(block.getX(), block.getY(), block.getZ()));
+		}
+	}
+}
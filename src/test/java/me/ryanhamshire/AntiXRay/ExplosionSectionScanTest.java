@@ -0,0 +1,65 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.block.Block;
+import org.junit.Test;
+
+// tests which chunk sections the explosion filter scans for protected blocks (see ExplosionSectionScanBenchmark for the
+// number of block reads)
+public class ExplosionSectionScanTest {
+
+	@Test
+	public void smallExplosionScansNoSections() {
+		// a tnt sized explosion, centered on a corner shared by 8 chunk sections
+		FakeWorld world = new FakeWorld(ExplosionFilterTest::getTerrainType);
+		List<Block> explosion = world.getSphere(0, 16, 0, 4.0D);
+		new ExplosionsListener().removeProtectedBlocks(world.getWorld(), ExplosionFilterTest.createProtections(), explosion);
+
+		// none of the sections contains enough exploded blocks to be worth scanning
+		assertEquals(0L, world.chunkSnapshots);
+		assertEquals(0L, world.snapshotTypeLookups);
+	}
+
+	@Test
+	public void repeatedExplosionSkipsCachedSections() {
+		// above the protected height: none of the sections contains protected blocks
+		FakeWorld world = new FakeWorld(ExplosionFilterTest::getTerrainType);
+		List<Block> explosion = world.getSphere(0, 70, 0, 13.4D);
+		WorldProtections protections = ExplosionFilterTest.createProtections();
+		ExplosionsListener listener = new ExplosionsListener();
+
+		listener.removeProtectedBlocks(world.getWorld(), protections, new ArrayList<Block>(explosion));
+		assertTrue(world.chunkSnapshots > 0);
+
+		world.resetCounters();
+		List<Block> blocks = new ArrayList<Block>(explosion);
+		listener.removeProtectedBlocks(world.getWorld(), protections, blocks);
+		assertEquals(explosion.size(), blocks.size());
+		assertEquals(0L, world.chunkSnapshots);
+		// only the blocks of sections which weren't scanned get checked
+		assertTrue(world.blockTypeLookups < explosion.size() / 4);
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * AntiXRay Server Plugin for Minecraft
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) blablubbabc <http://www.blablubbabc.de>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.ryanhamshire.AntiXRay;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+// a minimal world for tests, without a server: the block types are given by a terrain function, and the number of
+// block type lookups is counted
+class FakeWorld {
+
+	interface Terrain {
+
+		Material getType(int x, int y, int z);
+	}
+
+	private final Terrain terrain;
+	private final World world;
+
+	// the number of Block#getType calls, of chunk snapshots taken, and of block types read from chunk snapshots
+	long blockTypeLookups = 0;
+	long chunkSnapshots = 0;
+	long snapshotTypeLookups = 0;
+	// the number of calls to any of the fake objects, which are slow reflection proxies
+	long proxyCalls = 0;
+
+	FakeWorld(Terrain terrain) {
+		this.terrain = terrain;
+		this.world = proxy(World.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				proxyCalls++;
+				if (method.getName().equals("getChunkAt") && args.length == 2) {
+					return createChunk((Integer) args[0], (Integer) args[1]);
+				}
+				return handleObjectMethod(proxy, method, args);
+			}
+		});
+	}
+
+	World getWorld() {
+		return world;
+	}
+
+	void resetCounters() {
+		blockTypeLookups = 0;
+		chunkSnapshots = 0;
+		snapshotTypeLookups = 0;
+		proxyCalls = 0;
+	}
+
+	Block getBlock(final int x, final int y, final int z) {
+		return proxy(Block.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				proxyCalls++;
+				switch (method.getName()) {
+				case "getX":
+					return x;
+				case "getY":
+					return y;
+				case "getZ":
+					return z;
+				case "getWorld":
+					return world;
+				case "getType":
+					blockTypeLookups++;
+					return terrain.getType(x, y, z);
+				default:
+					return handleObjectMethod(proxy, method, args);
+				}
+			}
+		});
+	}
+
+	// the blocks within the given radius around the given center
+	List<Block> getSphere(int centerX, int centerY, int centerZ, double radius) {
+		List<Block> blocks = new ArrayList<Block>();
+		int range = (int) Math.ceil(radius);
+		for (int x = -range; x <= range; x++) {
+			for (int y = -range; y <= range; y++) {
+				for (int z = -range; z <= range; z++) {
+					if (x * x + y * y + z * z <= radius * radius) {
+						blocks.add(this.getBlock(centerX + x, centerY + y, centerZ + z));
+					}
+				}
+			}
+		}
+		return blocks;
+	}
+
+	private Chunk createChunk(final int chunkX, final int chunkZ) {
+		final ChunkSnapshot snapshot = proxy(ChunkSnapshot.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				proxyCalls++;
+				if (method.getName().equals("getBlockType")) {
+					snapshotTypeLookups++;
+					return terrain.getType((chunkX << 4) + (Integer) args[0], (Integer) args[1], (chunkZ << 4) + (Integer) args[2]);
+				}
+				return handleObjectMethod(proxy, method, args);
+			}
+		});
+		return proxy(Chunk.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				proxyCalls++;
+				switch (method.getName()) {
+				case "getX":
+					return chunkX;
+				case "getZ":
+					return chunkZ;
+				case "getWorld":
+					return world;
+				case "getChunkSnapshot":
+					chunkSnapshots++;
+					return snapshot;
+				default:
+					return handleObjectMethod(proxy, method, args);
+				}
+			}
+		});
+	}
+
+	private static Object handleObjectMethod(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "Fake" + method.getDeclaringClass().getSimpleName();
+		default:
+			throw new UnsupportedOperationException(method.getName());
+		}
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(FakeWorld.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+}